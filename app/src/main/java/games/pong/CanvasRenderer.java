@@ -0,0 +1,249 @@
+package games.pong;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.SurfaceHolder;
+
+/**
+ * Draws with a software {@link Canvas} from {@link SurfaceHolder#lockCanvas(Rect)},
+ * available on every API level.
+ *
+ * In partial redraw mode only the union of what moved or changed since the last frame is
+ * locked and redrawn, the surface keeps the rest of the previous frame.
+ */
+class CanvasRenderer implements Renderer {
+
+    /**
+     * Redraw the whole surface when the dirty area covers more than this fraction of it,
+     * one big lock is cheaper than a partial lock of almost everything.
+     */
+    private static final float MAX_DIRTY_FRACTION = 0.5f;
+
+    /**
+     * Anti-aliased edges bleed a little past the sprite bounds.
+     */
+    private static final int DIRTY_MARGIN = 2;
+
+    /**
+     * Frame timing overlay layout, in pixels.
+     */
+    private static final float STATS_MARGIN      = 8;
+    private static final float STATS_LINE_HEIGHT = Palette.STATS_TEXT_SIZE * 1.25f;
+    private static final float STATS_WIDTH       = Palette.STATS_TEXT_SIZE * 30;
+
+    static final float PADDLE_CORNER = 5;
+
+    protected final SurfaceHolder mSurfaceHolder;
+
+    protected final Palette  mPalette;
+    private final FrameStats mStats;
+
+    private final StaticLayer mStaticLayer;
+
+    /**
+     * Scratch rect for drawing the interpolated computer paddle.
+     */
+    private final RectF mDrawRect;
+
+    /**
+     * Region to lock for the next frame, and the sprite bounds of the frame being drawn
+     * and of the previous one, which has to be erased.
+     */
+    private final Rect mDirty;
+    private final Rect mSprites;
+    private final Rect mLastSprites;
+    private boolean    mFullRedraw;
+    private boolean    mPartialRedraw;
+    private boolean    mStatsOverlay;
+
+    CanvasRenderer(SurfaceHolder surfaceHolder, Palette palette, FrameStats stats) {
+        mSurfaceHolder = surfaceHolder;
+        mPalette = palette;
+        mStats = stats;
+
+        mStaticLayer = new StaticLayer(palette);
+
+        mDrawRect = new RectF();
+        mDirty = new Rect();
+        mSprites = new Rect();
+        mLastSprites = new Rect();
+        mFullRedraw = true;
+        mPartialRedraw = true;
+    }
+
+    @Override
+    public boolean render(GameSnapshot snapshot, float alpha) {
+        Rect dirty = dirtyRegion(snapshot, alpha);
+        final FrameStats stats = mStats;
+        long start = System.nanoTime();
+        Canvas c = lockCanvas(dirty);
+        long locked = System.nanoTime();
+        stats.record(FrameStats.LOCK, locked - start);
+        if (c == null) {
+            // Whatever changed in the static layer didn't make it to the screen.
+            mFullRedraw = true;
+            return false;
+        }
+        long drawn;
+        try {
+            updateDisplay(c, snapshot, alpha);
+        } finally {
+            drawn = System.nanoTime();
+            unlockCanvasAndPost(c);
+        }
+        long posted = System.nanoTime();
+        stats.record(FrameStats.RENDER, drawn - locked);
+        stats.record(FrameStats.POST, posted - drawn);
+        stats.frame(posted - start);
+
+        mLastSprites.set(mSprites);
+        mFullRedraw = false;
+        return true;
+    }
+
+    @Override
+    public void setPartialRedraw(boolean partialRedraw) {
+        mPartialRedraw = partialRedraw;
+    }
+
+    @Override
+    public void setStatsOverlay(boolean visible) {
+        mStatsOverlay = visible;
+    }
+
+    @Override
+    public void release() {
+        mStaticLayer.recycle();
+    }
+
+    /**
+     * @param dirty the region to redraw, or null for the whole surface.
+     * @return the canvas to draw on, or null if the surface isn't available.
+     */
+    protected Canvas lockCanvas(Rect dirty) {
+        return mSurfaceHolder.lockCanvas(dirty);
+    }
+
+    protected void unlockCanvasAndPost(Canvas canvas) {
+        mSurfaceHolder.unlockCanvasAndPost(canvas);
+    }
+
+    /**
+     * Bring the static layer up to date and work out what this frame has to redraw.
+     *
+     * @return the region to lock, or null to redraw the whole surface.
+     */
+    private Rect dirtyRegion(GameSnapshot snapshot, float alpha) {
+        final Rect dirty = mDirty;
+        dirty.setEmpty();
+        mStaticLayer.update(snapshot, dirty);
+
+        final Rect sprites = mSprites;
+        sprites.setEmpty();
+        RectF human = snapshot.humanBounds;
+        addPaddle(human.left, human.top, human.right, human.bottom);
+        RectF computer = snapshot.computerBounds;
+        float computerTop = lerp(snapshot.computerPrevTop, computer.top, alpha);
+        addPaddle(computer.left, computerTop, computer.right, computerTop + computer.height());
+        float[] balls = snapshot.balls;
+        for (int i = 0; i < snapshot.ballCount; i++) {
+            int b = i * GameSnapshot.BALL_STRIDE;
+            float cx = lerp(balls[b], balls[b + 2], alpha);
+            float cy = lerp(balls[b + 1], balls[b + 3], alpha);
+            float radius = balls[b + 4];
+            addSprite(cx - radius, cy - radius, cx + radius, cy + radius, DIRTY_MARGIN);
+        }
+        if (mStatsOverlay) {
+            addSprite(STATS_MARGIN, STATS_MARGIN,
+                    STATS_MARGIN + STATS_WIDTH, statsBottom(), DIRTY_MARGIN);
+        }
+
+        if (mFullRedraw || !mPartialRedraw) {
+            return null;
+        }
+        dirty.union(sprites);
+        dirty.union(mLastSprites);
+        long area = (long) dirty.width() * dirty.height();
+        if (area > MAX_DIRTY_FRACTION * snapshot.canvasWidth * snapshot.canvasHeight) {
+            return null;
+        }
+        return dirty;
+    }
+
+    /**
+     * Paddles glow on a hit, the shadow reaches half a paddle width past the bounds.
+     */
+    private void addPaddle(float left, float top, float right, float bottom) {
+        addSprite(left, top, right, bottom, (int) Math.ceil((right - left) / 2) + DIRTY_MARGIN);
+    }
+
+    private void addSprite(float left, float top, float right, float bottom, int margin) {
+        mSprites.union((int) Math.floor(left) - margin, (int) Math.floor(top) - margin,
+                (int) Math.ceil(right) + margin, (int) Math.ceil(bottom) + margin);
+    }
+
+    /**
+     * Draws the static layer, then the paddles and the balls over it.
+     * The score is posted by the simulation.
+     *
+     * @param alpha how far between the previous and the current physics step to draw
+     *              the balls and the computer paddle, from 0 to 1.
+     */
+    private void updateDisplay(Canvas canvas, GameSnapshot snapshot, float alpha) {
+        mStaticLayer.draw(canvas);
+
+        // The human paddle follows the finger directly, it is not moved by physics.
+        drawPaddle(canvas, snapshot.humanBounds, snapshot.humanCollision > 0
+                ? Palette.HUMAN_GLOW : Palette.HUMAN);
+
+        RectF computer = snapshot.computerBounds;
+        float computerTop = lerp(snapshot.computerPrevTop, computer.top, alpha);
+        mDrawRect.set(computer.left, computerTop,
+                computer.right, computerTop + computer.height());
+        drawPaddle(canvas, mDrawRect, snapshot.computerCollision > 0
+                ? Palette.COMPUTER_GLOW : Palette.COMPUTER);
+
+        Paint ballPaint = mPalette.get(Palette.BALL);
+        float[] balls = snapshot.balls;
+        for (int i = 0; i < snapshot.ballCount; i++) {
+            int b = i * GameSnapshot.BALL_STRIDE;
+            canvas.drawCircle(lerp(balls[b], balls[b + 2], alpha),
+                    lerp(balls[b + 1], balls[b + 3], alpha), balls[b + 4], ballPaint);
+        }
+
+        if (mStatsOverlay) {
+            drawStats(canvas);
+        }
+    }
+
+    /**
+     * @param role the paddle's role in the palette, the glow role while it glows.
+     */
+    protected void drawPaddle(Canvas canvas, RectF bounds, int role) {
+        canvas.drawRoundRect(bounds, PADDLE_CORNER, PADDLE_CORNER, mPalette.get(role));
+    }
+
+    private void drawStats(Canvas canvas) {
+        final FrameStats stats = mStats;
+        canvas.drawRect(STATS_MARGIN, STATS_MARGIN, STATS_MARGIN + STATS_WIDTH, statsBottom(),
+                mPalette.get(Palette.STATS_PANEL));
+        Paint text = mPalette.get(Palette.STATS_TEXT);
+        float x = STATS_MARGIN * 2;
+        float y = STATS_MARGIN + STATS_LINE_HEIGHT;
+        for (int line = 0; line < stats.lineCount(); line++) {
+            int length = stats.formatLine(line);
+            canvas.drawText(stats.line(), 0, length, x, y, text);
+            y += STATS_LINE_HEIGHT;
+        }
+    }
+
+    private float statsBottom() {
+        return STATS_MARGIN * 2 + STATS_LINE_HEIGHT * mStats.lineCount();
+    }
+
+    private static float lerp(float from, float to, float alpha) {
+        return from + (to - from) * alpha;
+    }
+}
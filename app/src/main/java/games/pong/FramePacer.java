@@ -0,0 +1,109 @@
+package games.pong;
+
+/**
+ * Decides on which vsyncs the render thread draws.
+ * Learns the display's refresh period from the vsync timestamps, so 60, 90 and 120 Hz panels
+ * all get a frame per vsync. When too many frames in a row finish after the next vsync,
+ * it draws only every other vsync until frames fit again. Physics is not affected,
+ * it runs on its own clock.
+ */
+class FramePacer {
+
+    /**
+     * Frames per evaluation window.
+     */
+    static final int WINDOW = 60;
+
+    /**
+     * Halve the rate when more than this many frames of a window were late.
+     */
+    static final int MAX_LATE_FRAMES = WINDOW / 4;
+
+    /**
+     * Go back to full rate after this many windows in which every frame would have been
+     * on time at full rate.
+     */
+    static final int CLEAN_WINDOWS_TO_RECOVER = 2;
+
+    static final int MAX_DIVISOR = 2;
+
+    private long mPeriodNanos;
+    private long mLastVsync;
+    private long mVsyncCount;
+    private int  mDivisor;
+
+    private int mWindowFrames;
+    private int mLateFrames;
+    private int mSlowFrames;
+    private int mCleanWindows;
+
+    /**
+     * @param fps the refresh rate to assume until vsyncs have been seen.
+     */
+    FramePacer(int fps) {
+        mPeriodNanos = 1000000000L / fps;
+        mDivisor = 1;
+    }
+
+    /**
+     * Call on every vsync.
+     *
+     * @return true if a frame should be drawn for this vsync.
+     */
+    boolean onVsync(long frameTimeNanos) {
+        if (mLastVsync != 0) {
+            long delta = frameTimeNanos - mLastVsync;
+            // Gaps from dropped vsyncs say nothing about the refresh rate.
+            if (delta > 0 && delta < mPeriodNanos * 3 / 2) {
+                mPeriodNanos += (delta - mPeriodNanos) / 8;
+            }
+        }
+        mLastVsync = frameTimeNanos;
+        return mVsyncCount++ % mDivisor == 0;
+    }
+
+    /**
+     * Call after a frame was drawn.
+     *
+     * @param frameTimeNanos the vsync the frame was drawn for.
+     * @param doneNanos      when the frame was posted.
+     */
+    void onFrameDone(long frameTimeNanos, long doneNanos) {
+        long frameNanos = doneNanos - frameTimeNanos;
+        if (frameNanos > mPeriodNanos) {
+            mSlowFrames++;
+            if (frameNanos > mPeriodNanos * mDivisor) {
+                mLateFrames++;
+            }
+        }
+        if (++mWindowFrames < WINDOW) {
+            return;
+        }
+
+        if (mLateFrames > MAX_LATE_FRAMES) {
+            mDivisor = Math.min(mDivisor * 2, MAX_DIVISOR);
+            mCleanWindows = 0;
+        } else if (mSlowFrames == 0 && mDivisor > 1) {
+            if (++mCleanWindows >= CLEAN_WINDOWS_TO_RECOVER) {
+                mDivisor /= 2;
+                mCleanWindows = 0;
+            }
+        } else {
+            mCleanWindows = 0;
+        }
+        mWindowFrames = 0;
+        mLateFrames = 0;
+        mSlowFrames = 0;
+    }
+
+    long periodNanos() {
+        return mPeriodNanos;
+    }
+
+    /**
+     * @return 1 when drawing on every vsync, 2 when on every other one.
+     */
+    int divisor() {
+        return mDivisor;
+    }
+}
@@ -0,0 +1,179 @@
+package games.pong;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Where the time goes in a frame: waiting for a surface buffer, stepping the physics,
+ * drawing and posting the buffer, each in its own {@link LatencyHistogram},
+ * plus how many frames missed their deadline.
+ *
+ * Physics is recorded by the game thread, the rest by the render thread.
+ */
+class FrameStats {
+
+    static final int LOCK    = 0;
+    static final int PHYSICS = 1;
+    static final int RENDER  = 2;
+    static final int POST    = 3;
+
+    private static final String[] NAMES = {"lock", "physics", "render", "post"};
+
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    private final LatencyHistogram[] mTimers;
+    private final long               mDeadlineNanos;
+    private volatile long            mFrames;
+    private volatile long            mMissedFrames;
+
+    /**
+     * Built once so the overlay can be formatted without allocating.
+     */
+    private final char[] mLine;
+
+    /**
+     * @param fps the frame rate the render thread aims for.
+     */
+    FrameStats(int fps) {
+        mTimers = new LatencyHistogram[NAMES.length];
+        for (int i = 0; i < mTimers.length; i++) {
+            mTimers[i] = new LatencyHistogram();
+        }
+        mDeadlineNanos = 1000000000L / fps;
+        mLine = new char[96];
+    }
+
+    void record(int timer, long nanos) {
+        mTimers[timer].record(nanos);
+    }
+
+    /**
+     * Count a drawn frame.
+     *
+     * @param workNanos the time from asking for a buffer to posting it.
+     */
+    void frame(long workNanos) {
+        mFrames++;
+        if (workNanos > mDeadlineNanos) {
+            mMissedFrames++;
+        }
+    }
+
+    void reset() {
+        for (LatencyHistogram timer : mTimers) {
+            timer.reset();
+        }
+        mFrames = 0;
+        mMissedFrames = 0;
+    }
+
+    /**
+     * @return the number of lines {@link #formatLine(int)} can format.
+     */
+    int lineCount() {
+        return NAMES.length + 1;
+    }
+
+    /**
+     * Format one overlay line into {@link #line()}, e.g.
+     * "physics p50 0.12 p95 0.30 p99 0.41 max 1.20 ms".
+     *
+     * @return the length of the line.
+     */
+    int formatLine(int line) {
+        final char[] out = mLine;
+        int pos = 0;
+        if (line < NAMES.length) {
+            LatencyHistogram timer = mTimers[line];
+            pos = append(out, pos, NAMES[line]);
+            while (pos < 8) {
+                out[pos++] = ' ';
+            }
+            for (double percentile : PERCENTILES) {
+                pos = append(out, pos, " p");
+                pos = append(out, pos, (long) percentile);
+                out[pos++] = ' ';
+                pos = appendMillis(out, pos, timer.percentile(percentile));
+            }
+            pos = append(out, pos, " max ");
+            pos = appendMillis(out, pos, timer.max());
+            pos = append(out, pos, " ms");
+        } else {
+            pos = append(out, pos, "missed ");
+            pos = append(out, pos, mMissedFrames);
+            pos = append(out, pos, " of ");
+            pos = append(out, pos, mFrames);
+            pos = append(out, pos, " frames");
+        }
+        return pos;
+    }
+
+    char[] line() {
+        return mLine;
+    }
+
+    /**
+     * Write one row per timer, durations in milliseconds, then the frame counts.
+     */
+    void writeCsv(Writer writer) throws IOException {
+        writer.write("timer,count,p50_ms,p95_ms,p99_ms,max_ms\n");
+        for (int i = 0; i < NAMES.length; i++) {
+            LatencyHistogram timer = mTimers[i];
+            writer.write(NAMES[i]);
+            writer.write(',');
+            writer.write(Long.toString(timer.count()));
+            for (double percentile : PERCENTILES) {
+                writer.write(',');
+                writer.write(Double.toString(timer.percentile(percentile) / 1e6));
+            }
+            writer.write(',');
+            writer.write(Double.toString(timer.max() / 1e6));
+            writer.write('\n');
+        }
+        writer.write("frames,");
+        writer.write(Long.toString(mFrames));
+        writer.write("\nmissed_frames,");
+        writer.write(Long.toString(mMissedFrames));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    private static int append(char[] out, int pos, String text) {
+        int length = Math.min(text.length(), out.length - pos);
+        text.getChars(0, length, out, pos);
+        return pos + length;
+    }
+
+    private static int append(char[] out, int pos, long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        if (pos + digits > out.length) {
+            return pos;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    /**
+     * Append nanoseconds as milliseconds with two decimals.
+     */
+    private static int appendMillis(char[] out, int pos, long nanos) {
+        long hundredths = (nanos + 5000) / 10000;
+        pos = append(out, pos, hundredths / 100);
+        if (pos + 3 > out.length) {
+            return pos;
+        }
+        out[pos++] = '.';
+        out[pos++] = (char) ('0' + hundredths / 10 % 10);
+        out[pos++] = (char) ('0' + hundredths % 10);
+        return pos;
+    }
+}
@@ -0,0 +1,115 @@
+package games.pong;
+
+import android.graphics.RectF;
+
+import games.pong.engine.BallStore;
+import games.pong.engine.BrickStore;
+import games.pong.engine.GameEngine;
+import games.pong.engine.Player;
+
+/**
+ * Everything the render thread needs to draw one frame.
+ * Filled in by the simulation thread and handed over through a {@link SnapshotBuffer}.
+ */
+class GameSnapshot {
+
+    static final int BALL_STRIDE  = 5; // prevCx, prevCy, cx, cy, radius
+    static final int BRICK_STRIDE = 4; // left, top, right, bottom
+
+    /**
+     * Increases with every published snapshot, 0 until the first one.
+     */
+    int  sequence;
+    long time;
+
+    boolean running;
+    int     canvasWidth;
+    int     canvasHeight;
+
+    final RectF humanBounds    = new RectF();
+    final RectF computerBounds = new RectF();
+    float computerPrevTop;
+    int   humanCollision;
+    int   computerCollision;
+
+    int     ballCount;
+    float[] balls = new float[BALL_STRIDE];
+
+    /**
+     * Bricks change rarely, so they are only copied when this falls behind the game's version.
+     */
+    int     brickVersion = -1;
+    int     brickLayout;
+    int     brickCount;
+    float[] bricks      = new float[0];
+    int[]   brickHealth = new int[0];
+
+    /**
+     * Brick handles, in ascending store index order, to tell which bricks changed.
+     */
+    int[]   brickIds    = new int[0];
+
+    /**
+     * Copy what the render thread draws from the game. Allocates only when the balls or
+     * bricks outgrow the arrays, and copies the bricks only when they changed.
+     */
+    void copyFrom(GameEngine engine) {
+        canvasWidth = engine.getWidth();
+        canvasHeight = engine.getHeight();
+        Player human = engine.getHumanPlayer();
+        Player computer = engine.getComputerPlayer();
+        humanBounds.set(human.left, human.top, human.right, human.bottom);
+        computerBounds.set(computer.left, computer.top, computer.right, computer.bottom);
+        computerPrevTop = computer.prevTop;
+        humanCollision = human.collision;
+        computerCollision = computer.collision;
+
+        final BallStore store = engine.getBalls();
+        int count = store.size();
+        ensureBallCapacity(count);
+        float[] ballData = balls;
+        for (int i = 0; i < count; i++) {
+            int b = i * BALL_STRIDE;
+            ballData[b] = store.prevCx[i];
+            ballData[b + 1] = store.prevCy[i];
+            ballData[b + 2] = store.cx[i];
+            ballData[b + 3] = store.cy[i];
+            ballData[b + 4] = store.radius[i];
+        }
+        ballCount = count;
+
+        int version = engine.getBrickVersion();
+        if (brickVersion != version) {
+            final BrickStore bricks = engine.getBricks();
+            ensureBrickCapacity(bricks.aliveCount());
+            float[] brickData = this.bricks;
+            int j = 0;
+            for (int k = bricks.nextAlive(0); k >= 0; k = bricks.nextAlive(k + 1), j++) {
+                int b = j * BRICK_STRIDE;
+                brickData[b] = bricks.left[k];
+                brickData[b + 1] = bricks.top[k];
+                brickData[b + 2] = bricks.right[k];
+                brickData[b + 3] = bricks.bottom[k];
+                brickHealth[j] = bricks.health[k];
+                brickIds[j] = bricks.handle(k);
+            }
+            brickCount = j;
+            brickVersion = version;
+            brickLayout = engine.getBrickLayout();
+        }
+    }
+
+    void ensureBallCapacity(int count) {
+        if (balls.length < count * BALL_STRIDE) {
+            balls = new float[count * BALL_STRIDE];
+        }
+    }
+
+    void ensureBrickCapacity(int count) {
+        if (brickHealth.length < count) {
+            bricks = new float[count * BRICK_STRIDE];
+            brickHealth = new int[count];
+            brickIds = new int[count];
+        }
+    }
+}
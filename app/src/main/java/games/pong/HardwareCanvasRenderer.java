@@ -0,0 +1,89 @@
+package games.pong;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+/**
+ * Draws through a GPU-backed canvas from {@link Surface#lockHardwareCanvas()}.
+ * Draw calls are batched by the hardware renderer instead of rasterized on the CPU,
+ * and the static layer bitmap is only uploaded again when it changes.
+ * A hardware canvas always covers the whole surface, so there are no partial redraws.
+ * Before API 28 it also ignores shadow layers, so glowing paddles are drawn from bitmaps
+ * painted once in software.
+ */
+@TargetApi(Build.VERSION_CODES.M)
+class HardwareCanvasRenderer extends CanvasRenderer {
+
+    /**
+     * Android P, the first release whose hardware canvas draws shadow layers.
+     */
+    private static final int SHADOW_LAYER_API = 28;
+
+    /**
+     * A glowing paddle with its glow, per glow role, and the rect it is painted at.
+     */
+    private final Bitmap[] mGlows = new Bitmap[Palette.ROLES];
+    private final RectF    mGlowRect = new RectF();
+
+    HardwareCanvasRenderer(SurfaceHolder surfaceHolder, Palette palette, FrameStats stats) {
+        super(surfaceHolder, palette, stats);
+        super.setPartialRedraw(false);
+    }
+
+    @Override
+    public void setPartialRedraw(boolean partialRedraw) {
+        // Not supported.
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        for (int role = 0; role < mGlows.length; role++) {
+            if (mGlows[role] != null) {
+                mGlows[role].recycle();
+                mGlows[role] = null;
+            }
+        }
+    }
+
+    @Override
+    protected void drawPaddle(Canvas canvas, RectF bounds, int role) {
+        if (Build.VERSION.SDK_INT >= SHADOW_LAYER_API
+                || (role != Palette.HUMAN_GLOW && role != Palette.COMPUTER_GLOW)) {
+            super.drawPaddle(canvas, bounds, role);
+            return;
+        }
+        final int margin = (int) Math.ceil(mPalette.getGlowRadius());
+        final int width = (int) Math.ceil(bounds.width()) + 2 * margin;
+        final int height = (int) Math.ceil(bounds.height()) + 2 * margin;
+        Bitmap glow = mGlows[role];
+        if (glow == null || glow.getWidth() != width || glow.getHeight() != height) {
+            if (glow != null) {
+                glow.recycle();
+            }
+            glow = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mGlowRect.set(margin, margin, margin + bounds.width(), margin + bounds.height());
+            new Canvas(glow).drawRoundRect(mGlowRect, PADDLE_CORNER, PADDLE_CORNER,
+                    mPalette.get(role));
+            mGlows[role] = glow;
+        }
+        canvas.drawBitmap(glow, bounds.left - margin, bounds.top - margin, null);
+    }
+
+    @Override
+    protected Canvas lockCanvas(Rect dirty) {
+        Surface surface = mSurfaceHolder.getSurface();
+        return surface.isValid() ? surface.lockHardwareCanvas() : null;
+    }
+
+    @Override
+    protected void unlockCanvasAndPost(Canvas canvas) {
+        mSurfaceHolder.getSurface().unlockCanvasAndPost(canvas);
+    }
+}
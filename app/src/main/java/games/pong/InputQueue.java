@@ -0,0 +1,92 @@
+package games.pong;
+
+/**
+ * Single-producer, single-consumer ring buffer carrying input from the UI thread
+ * to the simulation thread without either of them taking a lock.
+ */
+class InputQueue {
+
+    static final int NONE        = 0;
+    static final int MOVE_PADDLE = 1;
+    static final int RESUME      = 2;
+    static final int MULTI_BALL  = 3;
+
+    private final int[]   mTypes;
+    private final float[] mValues;
+    private final int     mMask;
+
+    /**
+     * Next slot to read, only written by the consumer.
+     */
+    private volatile int mHead;
+
+    /**
+     * Next slot to write, only written by the producer.
+     */
+    private volatile int mTail;
+
+    /**
+     * Producer side: paddle movement that did not fit and is folded into the next move.
+     */
+    private float mPendingMove;
+
+    /**
+     * Consumer side: value of the last polled event.
+     */
+    private float mValue;
+
+    /**
+     * @param capacity a power of two.
+     */
+    InputQueue(int capacity) {
+        mTypes = new int[capacity];
+        mValues = new float[capacity];
+        mMask = capacity - 1;
+    }
+
+    /**
+     * Called from the UI thread.
+     *
+     * @return false if the queue was full. Paddle moves are kept and sent with the next one.
+     */
+    boolean offer(int type, float value) {
+        if (type == MOVE_PADDLE) {
+            value += mPendingMove;
+            mPendingMove = 0;
+        }
+        int tail = mTail;
+        if (tail - mHead == mTypes.length) {
+            if (type == MOVE_PADDLE) {
+                mPendingMove = value;
+            }
+            return false;
+        }
+        mTypes[tail & mMask] = type;
+        mValues[tail & mMask] = value;
+        mTail = tail + 1;
+        return true;
+    }
+
+    /**
+     * Called from the simulation thread.
+     *
+     * @return the type of the next event, or {@link #NONE} if the queue is empty.
+     */
+    int poll() {
+        int head = mHead;
+        if (head == mTail) {
+            return NONE;
+        }
+        int type = mTypes[head & mMask];
+        mValue = mValues[head & mMask];
+        mHead = head + 1;
+        return type;
+    }
+
+    /**
+     * @return the value carried by the event last returned from {@link #poll()}.
+     */
+    float value() {
+        return mValue;
+    }
+}
@@ -0,0 +1,97 @@
+package games.pong;
+
+/**
+ * Histogram of durations in nanoseconds with HDR-style log-linear buckets:
+ * every power of two is split into 64 linear buckets, so any recorded
+ * value is off by less than 2% from its bucket while the whole range up to about
+ * 18 minutes fits in a few thousand counters. Recording is O(1) and allocation free.
+ *
+ * Written by one thread. Other threads may read it while it is being written,
+ * the numbers are then only approximately consistent with each other.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_BUCKETS    = SUB_BUCKETS / 2;
+
+    /**
+     * Larger values are counted as this one.
+     */
+    static final long HIGHEST_VALUE = (1L << 40) - 1;
+
+    private final int[] mCounts;
+    private long        mTotal;
+    private long        mMax;
+
+    LatencyHistogram() {
+        mCounts = new int[index(HIGHEST_VALUE) + 1];
+    }
+
+    void record(long nanos) {
+        long value = nanos < 0 ? 0 : nanos > HIGHEST_VALUE ? HIGHEST_VALUE : nanos;
+        mCounts[index(value)]++;
+        mTotal++;
+        if (value > mMax) {
+            mMax = value;
+        }
+    }
+
+    long count() {
+        return mTotal;
+    }
+
+    long max() {
+        return mMax;
+    }
+
+    /**
+     * @param percentile from 0 to 100.
+     * @return the largest value the given percentage of recorded values is at or below,
+     * 0 if nothing was recorded.
+     */
+    long percentile(double percentile) {
+        long total = mTotal;
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), mMax);
+            }
+        }
+        return mMax;
+    }
+
+    void reset() {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        mTotal = 0;
+        mMax = 0;
+    }
+
+    /**
+     * Values below {@link #SUB_BUCKETS} get a bucket each. Above that, a value keeps its top
+     * {@link #SUB_BUCKET_BITS} bits, in the upper half of a block of buckets per shift.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_BUCKETS - 1;
+        long sub = index % HALF_BUCKETS + HALF_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
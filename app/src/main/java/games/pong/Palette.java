@@ -0,0 +1,103 @@
+package games.pong;
+
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * Every Paint the game draws with, created once and never changed afterwards.
+ * Paints are looked up by role, bricks by health, so drawing a frame never allocates
+ * a Paint or touches native paint state. A paddle's hit glow is a separate paint
+ * rather than a shadow layer switched on and off. Hardware canvases before API 28 ignore
+ * shadow layers, so they draw the glow from a bitmap painted with it in software.
+ */
+final class Palette {
+
+    static final int HUMAN         = 0;
+    static final int HUMAN_GLOW    = 1;
+    static final int COMPUTER      = 2;
+    static final int COMPUTER_GLOW = 3;
+    static final int BALL          = 4;
+    static final int MEDIAN_LINE   = 5;
+    static final int BOUNDS        = 6;
+    static final int STATS_TEXT    = 7;
+    static final int STATS_PANEL   = 8;
+    static final int ROLES         = 9;
+
+    static final float STATS_TEXT_SIZE = 20;
+
+    /**
+     * Brick colour per health tier, starting at 1 hit point. Healthier bricks use the last one.
+     */
+    private static final int[] BRICK_COLORS = {Color.CYAN, Color.MAGENTA, Color.WHITE};
+
+    private final Paint[] mRoles;
+    private final Paint[] mBricks;
+    private final float   mGlowRadius;
+
+    /**
+     * @param glowRadius how far the paddle glow reaches past the paddle.
+     */
+    Palette(float glowRadius) {
+        mGlowRadius = glowRadius;
+        mRoles = new Paint[ROLES];
+        mRoles[HUMAN] = fill(Color.BLUE);
+        mRoles[HUMAN_GLOW] = glow(Color.BLUE, glowRadius);
+        mRoles[COMPUTER] = fill(Color.RED);
+        mRoles[COMPUTER_GLOW] = glow(Color.RED, glowRadius);
+        mRoles[BALL] = fill(Color.GREEN);
+
+        Paint medianLine = fill(Color.YELLOW);
+        medianLine.setAlpha(80);
+        medianLine.setStyle(Paint.Style.FILL_AND_STROKE);
+        medianLine.setStrokeWidth(2.0f);
+        medianLine.setPathEffect(new DashPathEffect(new float[]{5, 5}, 0));
+        mRoles[MEDIAN_LINE] = medianLine;
+
+        Paint bounds = fill(Color.YELLOW);
+        bounds.setStyle(Paint.Style.STROKE);
+        bounds.setStrokeWidth(1.0f);
+        mRoles[BOUNDS] = bounds;
+
+        Paint statsText = fill(Color.WHITE);
+        statsText.setTypeface(Typeface.MONOSPACE);
+        statsText.setTextSize(STATS_TEXT_SIZE);
+        mRoles[STATS_TEXT] = statsText;
+
+        Paint statsPanel = fill(Color.BLACK);
+        statsPanel.setAlpha(160);
+        mRoles[STATS_PANEL] = statsPanel;
+
+        mBricks = new Paint[BRICK_COLORS.length];
+        for (int i = 0; i < BRICK_COLORS.length; i++) {
+            mBricks[i] = fill(BRICK_COLORS[i]);
+        }
+    }
+
+    Paint get(int role) {
+        return mRoles[role];
+    }
+
+    float getGlowRadius() {
+        return mGlowRadius;
+    }
+
+    Paint brick(int health) {
+        int tier = health < 1 ? 0 : Math.min(health, mBricks.length) - 1;
+        return mBricks[tier];
+    }
+
+    private static Paint fill(int color) {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setColor(color);
+        return paint;
+    }
+
+    private static Paint glow(int color, float radius) {
+        Paint paint = fill(color);
+        paint.setShadowLayer(radius, 0, 0, color);
+        return paint;
+    }
+}
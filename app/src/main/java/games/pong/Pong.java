@@ -2,10 +2,23 @@ package games.pong;
 
 import android.app.Activity;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.TextView;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import games.pong.engine.GameTrace;
+
 /**
  * Main activity of Pong game.
  * Based on existing code found at:
@@ -13,9 +26,17 @@ import android.widget.TextView;
  */
 public class Pong extends Activity {
 
+    private static final String TAG = "Pong";
+
     private static final int MENU_NEW_GAME = 1;
     private static final int MENU_RESUME = 2;
     private static final int MENU_EXIT = 3;
+    private static final int MENU_STATS = 4;
+    private static final int MENU_EXPORT_STATS = 5;
+    private static final int MENU_MULTI_BALL = 6;
+
+    private static final String STATS_FILE  = "frame_stats.csv";
+    private static final String REPLAY_FILE = "session.replay";
 
     private PongThread mGameThread;
 
@@ -49,6 +70,21 @@ public class Pong extends Activity {
         mGameThread.saveState(outState);
     }
 
+    /**
+     * Also dumps the frame stats and the physics trace,
+     * e.g. with adb shell dumpsys activity top.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        try {
+            mGameThread.getFrameStats().writeCsv(writer);
+        } catch (IOException e) {
+            // PrintWriter doesn't throw
+        }
+        GameTrace.dump(writer);
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         super.onCreateOptionsMenu(menu);
@@ -56,6 +92,9 @@ public class Pong extends Activity {
         menu.add(0, MENU_NEW_GAME, 0, R.string.menu_new_game);
         menu.add(0, MENU_RESUME, 0, R.string.menu_resume);
         menu.add(0, MENU_EXIT, 0, R.string.menu_exit);
+        menu.add(0, MENU_STATS, 0, R.string.menu_stats);
+        menu.add(0, MENU_EXPORT_STATS, 0, R.string.menu_export_stats);
+        menu.add(0, MENU_MULTI_BALL, 0, R.string.menu_multi_ball);
 
         return true;
     }
@@ -72,8 +111,72 @@ public class Pong extends Activity {
             case MENU_RESUME:
                 mGameThread.unPause();
                 return true;
+            case MENU_STATS:
+                mGameThread.toggleStatsOverlay();
+                return true;
+            case MENU_EXPORT_STATS:
+                exportStats();
+                exportReplay();
+                return true;
+            case MENU_MULTI_BALL:
+                mGameThread.multiBall();
+                return true;
         }
         return false;
     }
 
+    /**
+     * Write the frame stats to the app's external files directory, fetch them with
+     * adb pull /sdcard/Android/data/<package>/files/frame_stats.csv
+     */
+    private void exportStats() {
+        File file = new File(getExternalFilesDir(null), STATS_FILE);
+        Writer writer = null;
+        try {
+            writer = new FileWriter(file);
+            mGameThread.getFrameStats().writeCsv(writer);
+            Log.i(TAG, "Frame stats written to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "Can't write frame stats", e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // don't care
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the recording of the current game next to the frame stats, in builds that
+     * record one. Long games are recorded in stretches of 20 minutes or more and only the
+     * latest is kept. Play it back on a desktop JVM with games.pong.engine.Replay.
+     */
+    private void exportReplay() {
+        File file = new File(getExternalFilesDir(null), REPLAY_FILE);
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(file));
+            if (mGameThread.writeReplay(out)) {
+                Log.i(TAG, "Replay written to " + file);
+            } else {
+                out.close();
+                out = null;
+                file.delete();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Can't write replay", e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // don't care
+                }
+            }
+        }
+    }
+
 }
\ No newline at end of file
@@ -32,14 +32,16 @@ public class PongView extends SurfaceView implements SurfaceHolder.Callback {
                 new Handler() {
                     @Override
                     public void handleMessage(Message m) {
-                        mStatusView.setVisibility(m.getData().getInt("vis"));
-                        mStatusView.setText(m.getData().getString("text"));
+                        mStatusView.setVisibility(m.arg2);
+                        if (m.arg1 != 0) {
+                            mStatusView.setText(m.arg1);
+                        }
                     }
                 },
                 new Handler() {
                     @Override
                     public void handleMessage(Message m) {
-                        mScoreView.setText(m.getData().getString("text"));
+                        mScoreView.setText(m.arg1 + "    " + m.arg2);
                     }
                 },
                 attributeSet
@@ -97,7 +99,7 @@ public class PongView extends SurfaceView implements SurfaceHolder.Callback {
             case MotionEvent.ACTION_DOWN:
                 if (mGameThread.isBetweenRounds()) {
                     // resume game
-                    mGameThread.setState(PongThread.STATE_RUNNING);
+                    mGameThread.unPause();
                 } else {
                     if (mGameThread.isTouchOnHumanPaddle(event)) {
                         moving = true;
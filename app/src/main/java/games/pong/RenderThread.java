@@ -0,0 +1,161 @@
+package games.pong;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+
+/**
+ * Draws the latest {@link GameSnapshot} published by {@link PongThread}.
+ * Never touches the game state itself, so it needs no lock shared with the simulation.
+ *
+ * Frames are driven by {@link Choreographer} vsync callbacks, and a {@link FramePacer}
+ * picks which vsyncs get a frame. Before Jelly Bean there is no Choreographer and the thread
+ * sleeps between frames instead.
+ */
+class RenderThread extends Thread {
+
+    private static final String TAG = "RenderThread";
+
+    private final SnapshotBuffer mSnapshots;
+    private final Renderer       mRenderer;
+    private final FramePacer     mPacer;
+    private final long           mFrameNanos;
+    private final long           mTickNanos;
+
+    private volatile boolean mRun;
+    private volatile boolean mPartialRedraw;
+    private volatile boolean mStatsOverlay;
+
+    private volatile Looper mLooper;
+
+    RenderThread(SurfaceHolder surfaceHolder,
+                 SnapshotBuffer snapshots,
+                 int fps,
+                 long tickNanos,
+                 Palette palette,
+                 FrameStats stats) {
+        mSnapshots = snapshots;
+        mPacer = new FramePacer(fps);
+        mFrameNanos = 1000000000L / fps;
+        mTickNanos = tickNanos;
+        mPartialRedraw = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            mRenderer = new HardwareCanvasRenderer(surfaceHolder, palette, stats);
+        } else {
+            mRenderer = new CanvasRenderer(surfaceHolder, palette, stats);
+        }
+    }
+
+    /**
+     * The render loop.
+     */
+    @Override
+    public void run() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            runOnVsync();
+        } else {
+            runOnSleep();
+        }
+        mRenderer.release();
+    }
+
+    void setRunning(boolean running) {
+        mRun = running;
+        Looper looper = mLooper;
+        if (!running && looper != null) {
+            looper.quit();
+        }
+    }
+
+    /**
+     * Turn partial redraws on or off, when off every frame redraws the whole surface.
+     * Only the software renderer does partial redraws.
+     */
+    void setPartialRedraw(boolean partialRedraw) {
+        mPartialRedraw = partialRedraw;
+    }
+
+    void setStatsOverlay(boolean visible) {
+        mStatsOverlay = visible;
+    }
+
+    boolean isStatsOverlayVisible() {
+        return mStatsOverlay;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void runOnVsync() {
+        Looper.prepare();
+        mLooper = Looper.myLooper();
+        Choreographer.getInstance().postFrameCallback(new VsyncCallback());
+        Looper.loop();
+        mLooper = null;
+    }
+
+    /**
+     * Used where there is no Choreographer. Keeps to a fixed frame rate on the nanosecond clock.
+     */
+    private void runOnSleep() {
+        long nextFrame = System.nanoTime();
+        while (mRun) {
+            drawFrame(nextFrame);
+            nextFrame += mFrameNanos;
+            long sleepNanos = nextFrame - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+                } catch (InterruptedException e) {
+                    Log.e(TAG, "Interrupted", e);
+                }
+            } else if (-sleepNanos > mFrameNanos) {
+                // Too far behind, don't try to catch up with a burst of frames.
+                nextFrame = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * @param frameTimeNanos when the frame will be shown, on the {@link System#nanoTime()} clock.
+     */
+    private void drawFrame(long frameTimeNanos) {
+        GameSnapshot snapshot = mSnapshots.latest();
+        if (snapshot.sequence > 0) {
+            mRenderer.setPartialRedraw(mPartialRedraw);
+            mRenderer.setStatsOverlay(mStatsOverlay);
+            mRenderer.render(snapshot, alpha(snapshot, frameTimeNanos));
+        }
+    }
+
+    /**
+     * @return how far the frame time is past the snapshot's physics step, from 0 to 1.
+     */
+    private float alpha(GameSnapshot snapshot, long frameTimeNanos) {
+        if (!snapshot.running) {
+            return 1;
+        }
+        float alpha = (float) (frameTimeNanos - snapshot.time) / mTickNanos;
+        return alpha < 0 ? 0 : alpha > 1 ? 1 : alpha;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class VsyncCallback implements Choreographer.FrameCallback {
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mRun) {
+                Looper.myLooper().quit();
+                return;
+            }
+            // Ask for the next vsync first, so a slow frame can't make us miss the request.
+            Choreographer.getInstance().postFrameCallback(this);
+            if (mPacer.onVsync(frameTimeNanos)) {
+                drawFrame(frameTimeNanos);
+                mPacer.onFrameDone(frameTimeNanos, System.nanoTime());
+            }
+        }
+    }
+
+}
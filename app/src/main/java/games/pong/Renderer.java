@@ -0,0 +1,32 @@
+package games.pong;
+
+/**
+ * Draws a {@link GameSnapshot} onto the game surface.
+ * Called only from the {@link RenderThread}.
+ */
+interface Renderer {
+
+    /**
+     * Draw one frame.
+     *
+     * @param alpha how far between the previous and the current physics step to draw
+     *              the moving objects, from 0 to 1.
+     * @return false if the surface wasn't available and nothing was drawn.
+     */
+    boolean render(GameSnapshot snapshot, float alpha);
+
+    /**
+     * Turn partial redraws on or off, if the renderer supports them.
+     */
+    void setPartialRedraw(boolean partialRedraw);
+
+    /**
+     * Show or hide the frame timing overlay.
+     */
+    void setStatsOverlay(boolean visible);
+
+    /**
+     * Free the renderer's resources, it is not used again.
+     */
+    void release();
+}
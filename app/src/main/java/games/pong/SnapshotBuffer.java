@@ -0,0 +1,56 @@
+package games.pong;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Triple buffer of {@link GameSnapshot}s between the simulation and render threads.
+ * The simulation thread writes the back snapshot and swaps it into the ready slot,
+ * the render thread swaps the ready slot with its front snapshot when it holds a newer one.
+ * Each snapshot is owned by exactly one side at a time, so neither thread ever blocks.
+ */
+class SnapshotBuffer {
+
+    private final AtomicReference<GameSnapshot> mReady;
+
+    /**
+     * Only touched by the simulation thread.
+     */
+    private GameSnapshot mBack;
+    private int          mSequence;
+
+    /**
+     * Only touched by the render thread.
+     */
+    private GameSnapshot mFront;
+
+    SnapshotBuffer() {
+        mReady = new AtomicReference<>(new GameSnapshot());
+        mBack = new GameSnapshot();
+        mFront = new GameSnapshot();
+    }
+
+    /**
+     * @return the snapshot the simulation thread should fill in next.
+     */
+    GameSnapshot back() {
+        return mBack;
+    }
+
+    /**
+     * Make the back snapshot visible to the render thread.
+     */
+    void publish() {
+        mBack.sequence = ++mSequence;
+        mBack = mReady.getAndSet(mBack);
+    }
+
+    /**
+     * @return the most recently published snapshot, owned by the render thread until the next call.
+     */
+    GameSnapshot latest() {
+        if (mReady.get().sequence > mFront.sequence) {
+            mFront = mReady.getAndSet(mFront);
+        }
+        return mFront;
+    }
+}
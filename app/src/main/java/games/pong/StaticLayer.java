@@ -0,0 +1,225 @@
+package games.pong;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+
+import games.pong.engine.BrickStore;
+
+/**
+ * Offscreen bitmap with the parts of the scene that only change when a brick breaks:
+ * background, bounds, median line and bricks. Each frame blits it in one call instead of
+ * drawing every brick, and a broken brick only repaints the bitmap under that brick.
+ * Only used from the {@link RenderThread}.
+ */
+class StaticLayer {
+
+    /**
+     * Beyond this many changed bricks in one go the whole layer is repainted.
+     */
+    private static final int MAX_DIRTY_BRICKS = 32;
+
+    /**
+     * Anti-aliased edges bleed a little past the brick bounds.
+     */
+    private static final int DIRTY_MARGIN = 2;
+
+    private final Palette mPalette;
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private int    mWidth;
+    private int    mHeight;
+
+    /**
+     * The bricks currently painted on the layer, as published in the snapshot it was built from.
+     */
+    private int     mVersion = -1;
+    private int     mLayout;
+    private int     mBrickCount;
+    private int[]   mBrickIds = new int[0];
+    private int[]   mBrickHealth = new int[0];
+    private float[] mBricks   = new float[0];
+
+    StaticLayer(Palette palette) {
+        mPalette = palette;
+    }
+
+    /**
+     * Bring the layer up to date with the snapshot, repainting only what changed.
+     *
+     * @param dirty grown to cover every region of the layer that was repainted.
+     */
+    void update(GameSnapshot snapshot, Rect dirty) {
+        if (mBitmap == null || mWidth != snapshot.canvasWidth
+                || mHeight != snapshot.canvasHeight) {
+            resize(snapshot.canvasWidth, snapshot.canvasHeight);
+            repaint(snapshot, dirty);
+        } else if (mLayout != snapshot.brickLayout) {
+            // A new set of bricks, whose ids can't be compared with the old ones.
+            repaint(snapshot, dirty);
+        } else if (mVersion != snapshot.brickVersion) {
+            if (!repaintChanged(snapshot, dirty)) {
+                repaint(snapshot, dirty);
+            }
+        } else {
+            return;
+        }
+        remember(snapshot);
+    }
+
+    void draw(Canvas canvas) {
+        if (mBitmap != null) {
+            canvas.drawBitmap(mBitmap, 0, 0, null);
+        }
+    }
+
+    /**
+     * Release the bitmap, e.g. when the surface goes away.
+     */
+    void recycle() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+            mCanvas = null;
+        }
+        mVersion = -1;
+    }
+
+    private void resize(int width, int height) {
+        recycle();
+        mWidth = width;
+        mHeight = height;
+        mBitmap = Bitmap.createBitmap(Math.max(1, width), Math.max(1, height),
+                Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+    }
+
+    private void repaint(GameSnapshot snapshot, Rect dirty) {
+        paintRegion(snapshot, 0, 0, mWidth, mHeight);
+        dirty.union(0, 0, mWidth, mHeight);
+    }
+
+    /**
+     * Repaint under every brick that was removed, added or damaged since the layer was
+     * last updated.
+     * Both brick lists are in ascending store index order, so one merge pass finds them.
+     *
+     * @return false if too much changed and the caller should repaint everything.
+     */
+    private boolean repaintChanged(GameSnapshot snapshot, Rect dirty) {
+        int[] newIds = snapshot.brickIds;
+        int newCount = snapshot.brickCount;
+        int changed = 0;
+        int i = 0;
+        int j = 0;
+        // First count, so a big change doesn't paint regions twice.
+        while (i < mBrickCount || j < newCount) {
+            int order = compare(i, newIds, j, newCount);
+            if (order == 0 && mBrickHealth[i] == snapshot.brickHealth[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            if (++changed > MAX_DIRTY_BRICKS) {
+                return false;
+            }
+            if (order <= 0) {
+                i++;
+            }
+            if (order >= 0) {
+                j++;
+            }
+        }
+
+        i = 0;
+        j = 0;
+        while (i < mBrickCount || j < newCount) {
+            int order = compare(i, newIds, j, newCount);
+            if (order == 0) {
+                if (mBrickHealth[i] != snapshot.brickHealth[j]) {
+                    paintRegion(snapshot, snapshot.bricks, j, dirty);
+                }
+                i++;
+                j++;
+            } else if (order < 0) {
+                paintRegion(snapshot, mBricks, i++, dirty);
+            } else {
+                paintRegion(snapshot, snapshot.bricks, j++, dirty);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 0 for the same brick, negative if the old brick comes first (it is gone),
+     * positive if the new brick comes first (it was added).
+     */
+    private int compare(int i, int[] newIds, int j, int newCount) {
+        if (i == mBrickCount) {
+            return 1;
+        }
+        if (j == newCount) {
+            return -1;
+        }
+        int oldId = mBrickIds[i];
+        int newId = newIds[j];
+        if (oldId == newId) {
+            return 0;
+        }
+        int oldIndex = oldId & BrickStore.HANDLE_INDEX_MASK;
+        int newIndex = newId & BrickStore.HANDLE_INDEX_MASK;
+        // Same slot reused by a different brick: treat the old one as gone first.
+        return oldIndex <= newIndex ? -1 : 1;
+    }
+
+    private void paintRegion(GameSnapshot snapshot, float[] bricks, int brick, Rect dirty) {
+        int b = brick * GameSnapshot.BRICK_STRIDE;
+        int left = (int) Math.floor(bricks[b]) - DIRTY_MARGIN;
+        int top = (int) Math.floor(bricks[b + 1]) - DIRTY_MARGIN;
+        int right = (int) Math.ceil(bricks[b + 2]) + DIRTY_MARGIN;
+        int bottom = (int) Math.ceil(bricks[b + 3]) + DIRTY_MARGIN;
+        paintRegion(snapshot, left, top, right, bottom);
+        dirty.union(left, top, right, bottom);
+    }
+
+    private void paintRegion(GameSnapshot snapshot, int left, int top, int right, int bottom) {
+        final Canvas canvas = mCanvas;
+        canvas.save();
+        canvas.clipRect(left, top, right, bottom);
+
+        canvas.drawColor(Color.BLACK);
+        canvas.drawRect(0, 0, mWidth, mHeight, mPalette.get(Palette.BOUNDS));
+        final int middle = mWidth / 2;
+        canvas.drawLine(middle, 1, middle, mHeight - 1, mPalette.get(Palette.MEDIAN_LINE));
+
+        float[] bricks = snapshot.bricks;
+        for (int j = 0; j < snapshot.brickCount; j++) {
+            int b = j * GameSnapshot.BRICK_STRIDE;
+            if (bricks[b] >= right || bricks[b + 2] <= left
+                    || bricks[b + 1] >= bottom || bricks[b + 3] <= top) {
+                continue;
+            }
+            canvas.drawRect(bricks[b], bricks[b + 1], bricks[b + 2], bricks[b + 3],
+                    mPalette.brick(snapshot.brickHealth[j]));
+        }
+
+        canvas.restore();
+    }
+
+    private void remember(GameSnapshot snapshot) {
+        int count = snapshot.brickCount;
+        if (mBrickIds.length < count) {
+            mBrickIds = new int[count];
+            mBrickHealth = new int[count];
+            mBricks = new float[count * GameSnapshot.BRICK_STRIDE];
+        }
+        System.arraycopy(snapshot.brickIds, 0, mBrickIds, 0, count);
+        System.arraycopy(snapshot.brickHealth, 0, mBrickHealth, 0, count);
+        System.arraycopy(snapshot.bricks, 0, mBricks, 0, count * GameSnapshot.BRICK_STRIDE);
+        mBrickCount = count;
+        mVersion = snapshot.brickVersion;
+        mLayout = snapshot.brickLayout;
+    }
+}
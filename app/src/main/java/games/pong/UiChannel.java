@@ -0,0 +1,56 @@
+package games.pong;
+
+/**
+ * Forwards score and status changes from the game to the UI thread.
+ * Only changes are forwarded and they travel as primitive arguments,
+ * so a steady-state frame posts nothing and allocates nothing.
+ */
+class UiChannel {
+
+    static final int MSG_SCORE  = 1;
+    static final int MSG_STATUS = 2;
+
+    /**
+     * Where the messages go, normally a pooled {@link android.os.Message} per change.
+     */
+    interface Sink {
+        void post(int what, int arg1, int arg2);
+    }
+
+    private final Sink mSink;
+
+    private int     mHumanScore;
+    private int     mComputerScore;
+    private int     mStatusText;
+    private int     mStatusVisibility;
+    private boolean mScorePosted;
+    private boolean mStatusPosted;
+
+    UiChannel(Sink sink) {
+        mSink = sink;
+    }
+
+    void setScore(int humanScore, int computerScore) {
+        if (mScorePosted && humanScore == mHumanScore && computerScore == mComputerScore) {
+            return;
+        }
+        mHumanScore = humanScore;
+        mComputerScore = computerScore;
+        mScorePosted = true;
+        mSink.post(MSG_SCORE, humanScore, computerScore);
+    }
+
+    /**
+     * @param text       string resource id, or 0 to keep the current text.
+     * @param visibility {@link android.view.View#VISIBLE} or {@link android.view.View#INVISIBLE}.
+     */
+    void setStatus(int text, int visibility) {
+        if (mStatusPosted && text == mStatusText && visibility == mStatusVisibility) {
+            return;
+        }
+        mStatusText = text;
+        mStatusVisibility = visibility;
+        mStatusPosted = true;
+        mSink.post(MSG_STATUS, text, visibility);
+    }
+}
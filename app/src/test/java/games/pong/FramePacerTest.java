@@ -0,0 +1,60 @@
+package games.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the frame pacer follows the display and backs off when frames run late.
+ */
+public class FramePacerTest {
+
+    private static final long PERIOD_120HZ = 1000000000L / 120;
+
+    @Test
+    public void period_adaptsToFasterDisplay() throws Exception {
+        FramePacer pacer = new FramePacer(60);
+        long vsync = 1000;
+        for (int i = 0; i < 100; i++) {
+            assertTrue(pacer.onVsync(vsync));
+            vsync += PERIOD_120HZ;
+        }
+
+        assertEquals(PERIOD_120HZ, pacer.periodNanos(), PERIOD_120HZ / 100);
+    }
+
+    @Test
+    public void lateFrames_halveRenderRateUntilTheyFitAgain() throws Exception {
+        FramePacer pacer = new FramePacer(60);
+        long period = 1000000000L / 60;
+        long vsync = 1000;
+        for (int i = 0; i < FramePacer.WINDOW; i++) {
+            pacer.onVsync(vsync);
+            pacer.onFrameDone(vsync, vsync + period * 3 / 2);
+            vsync += period;
+        }
+        assertEquals(2, pacer.divisor());
+
+        int drawn = 0;
+        int frames = FramePacer.WINDOW * FramePacer.CLEAN_WINDOWS_TO_RECOVER;
+        while (drawn < frames) {
+            if (pacer.onVsync(vsync)) {
+                // Fits in two periods, but would not fit in one.
+                assertEquals(2, pacer.divisor());
+                pacer.onFrameDone(vsync, vsync + period * 3 / 2);
+                drawn++;
+            }
+            vsync += period;
+        }
+        assertEquals(2, pacer.divisor());
+
+        for (drawn = 0; drawn < frames; ) {
+            if (pacer.onVsync(vsync)) {
+                pacer.onFrameDone(vsync, vsync + period / 2);
+                drawn++;
+            }
+            vsync += period;
+        }
+        assertEquals(1, pacer.divisor());
+    }
+}
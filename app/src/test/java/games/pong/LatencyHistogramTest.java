@@ -0,0 +1,49 @@
+package games.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bucket math and the percentiles of the frame timing histogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueWithinTwoPercent() throws Exception {
+        long previous = -1;
+        for (int i = 0; i <= LatencyHistogram.index(LatencyHistogram.HIGHEST_VALUE); i++) {
+            long highest = LatencyHistogram.highestValueAt(i);
+            assertEquals(i, LatencyHistogram.index(highest));
+            assertEquals(i, LatencyHistogram.index(previous + 1));
+            assertTrue(highest - previous - 1 <= Math.max(1, highest / 50));
+            previous = highest;
+        }
+    }
+
+    @Test
+    public void percentiles_ofUniformValues() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1000000);
+        }
+
+        assertEquals(100, histogram.count());
+        assertEquals(100000000, histogram.max());
+        assertEquals(50e6, histogram.percentile(50), 50e6 / 50);
+        assertEquals(95e6, histogram.percentile(95), 95e6 / 50);
+        assertEquals(99e6, histogram.percentile(99), 99e6 / 50);
+        assertEquals(100000000, histogram.percentile(100));
+    }
+
+    @Test
+    public void reset_forgetsEverything() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(12345);
+        histogram.reset();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(99));
+    }
+}
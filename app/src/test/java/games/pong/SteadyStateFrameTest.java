@@ -0,0 +1,99 @@
+package games.pong;
+
+import com.sun.management.ThreadMXBean;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import games.pong.engine.BallStore;
+import games.pong.engine.GameEngine;
+import games.pong.engine.Player;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that a steady-state simulation frame, the physics step and the snapshot handed to
+ * the render thread included, allocates nothing. Only starting a new round may allocate.
+ */
+public class SteadyStateFrameTest {
+
+    private static final int FRAMES = 100000;
+
+    @Test
+    public void simulationFrame_allocatesNothing() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        GameEngine engine = new GameEngine(45, 200, 15, new Random(1));
+        engine.setSize(1920, 1080);
+        engine.setupNewRound();
+        InputQueue input = new InputQueue(64);
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+        UiChannel channel = new UiChannel(new UiChannel.Sink() {
+            @Override
+            public void post(int what, int arg1, int arg2) {
+            }
+        });
+        FrameStats stats = new FrameStats(60);
+
+        // Warm up so class loading, JIT compilation and growing buffers don't count.
+        for (int i = 0; i < FRAMES; i++) {
+            if (!frame(engine, input, snapshots, channel, stats)) {
+                engine.setupNewRound();
+            }
+        }
+
+        long allocated = 0;
+        int ticks = 0;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < FRAMES; i++) {
+            if (frame(engine, input, snapshots, channel, stats)) {
+                ticks++;
+            } else {
+                allocated += threads.getThreadAllocatedBytes(thread) - before;
+                engine.setupNewRound();
+                before = threads.getThreadAllocatedBytes(thread);
+            }
+        }
+        allocated += threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(0, allocated);
+        assertTrue(ticks > FRAMES / 2);
+        assertTrue(engine.getPaddleHits() > 0);
+    }
+
+    /**
+     * What the simulation thread does per physics step, with the player keeping the paddle
+     * on the ball and the render thread picking up every snapshot.
+     *
+     * @return false if the round is over.
+     */
+    private static boolean frame(GameEngine engine, InputQueue input, SnapshotBuffer snapshots,
+                                 UiChannel channel, FrameStats stats) {
+        Player human = engine.getHumanPlayer();
+        BallStore balls = engine.getBalls();
+        input.offer(InputQueue.MOVE_PADDLE, balls.cy[0] - (human.top + human.bottom) / 2);
+        while (input.poll() != InputQueue.NONE) {
+            engine.moveHumanPaddle(input.value());
+        }
+
+        long start = System.nanoTime();
+        boolean playing = engine.tick();
+        stats.record(FrameStats.PHYSICS, System.nanoTime() - start);
+
+        GameSnapshot snapshot = snapshots.back();
+        snapshot.time = System.nanoTime();
+        snapshot.running = playing;
+        snapshot.copyFrom(engine);
+        channel.setScore(human.score, engine.getComputerPlayer().score);
+        snapshots.publish();
+        snapshots.latest();
+        return playing;
+    }
+}
@@ -0,0 +1,103 @@
+package games.pong;
+
+import com.sun.management.ThreadMXBean;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that score and status updates only reach the UI thread on change
+ * and that a steady-state frame allocates nothing on the way there.
+ */
+public class UiChannelTest {
+
+    private static class CountingSink implements UiChannel.Sink {
+        int posts;
+        int lastWhat;
+        int lastArg1;
+        int lastArg2;
+
+        @Override
+        public void post(int what, int arg1, int arg2) {
+            posts++;
+            lastWhat = what;
+            lastArg1 = arg1;
+            lastArg2 = arg2;
+        }
+    }
+
+    @Test
+    public void score_postedOnlyOnChange() throws Exception {
+        CountingSink sink = new CountingSink();
+        UiChannel channel = new UiChannel(sink);
+
+        channel.setScore(0, 0);
+        channel.setScore(0, 0);
+        channel.setScore(0, 0);
+        assertEquals(1, sink.posts);
+
+        channel.setScore(1, 0);
+        assertEquals(2, sink.posts);
+        assertEquals(UiChannel.MSG_SCORE, sink.lastWhat);
+        assertEquals(1, sink.lastArg1);
+        assertEquals(0, sink.lastArg2);
+    }
+
+    @Test
+    public void status_postedOnlyOnChange() throws Exception {
+        CountingSink sink = new CountingSink();
+        UiChannel channel = new UiChannel(sink);
+
+        channel.setStatus(R.string.mode_pause, 0);
+        channel.setStatus(R.string.mode_pause, 0);
+        assertEquals(1, sink.posts);
+
+        channel.setStatus(0, 4);
+        assertEquals(2, sink.posts);
+        assertEquals(UiChannel.MSG_STATUS, sink.lastWhat);
+        assertEquals(4, sink.lastArg2);
+    }
+
+    @Test
+    public void steadyStateFrame_allocatesNothing() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        CountingSink sink = new CountingSink();
+        UiChannel channel = new UiChannel(sink);
+        InputQueue input = new InputQueue(64);
+
+        // Warm up so class loading and JIT compilation don't count.
+        for (int i = 0; i < 100000; i++) {
+            frame(channel, input);
+        }
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 100000; i++) {
+            frame(channel, input);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(0, allocated);
+        assertEquals(2, sink.posts);
+    }
+
+    /**
+     * What the simulation thread does per tick on the way to and from the UI thread.
+     */
+    private static void frame(UiChannel channel, InputQueue input) {
+        input.offer(InputQueue.MOVE_PADDLE, 1.5f);
+        while (input.poll() != InputQueue.NONE) {
+            input.value();
+        }
+        channel.setScore(3, 2);
+        channel.setStatus(0, 4);
+    }
+}
@@ -0,0 +1,43 @@
+package games.pong.engine;
+
+/**
+ * View of one ball in a {@link BallStore}.
+ * Based on existing code found at:
+ * https://github.com/catalinc/pong-game-android
+ */
+
+public class Ball {
+
+    private final BallStore mStore;
+    private final int       mIndex;
+
+    Ball(BallStore store, int index) {
+        mStore = store;
+        mIndex = index;
+    }
+
+    public float getCx() {
+        return mStore.cx[mIndex];
+    }
+
+    public float getCy() {
+        return mStore.cy[mIndex];
+    }
+
+    public float getDx() {
+        return mStore.dx[mIndex];
+    }
+
+    public float getDy() {
+        return mStore.dy[mIndex];
+    }
+
+    public float getRadius() {
+        return mStore.radius[mIndex];
+    }
+
+    public void set(float cx, float cy, float dx, float dy) {
+        mStore.set(mIndex, cx, cy, dx, dy);
+    }
+
+}
@@ -0,0 +1,89 @@
+package games.pong.engine;
+
+/**
+ * A range of balls moved through one tick, and everything they did to the rest of the game:
+ * bricks hit, paddle hits and goals. Batches only write to their own balls and read the
+ * bricks and paddles, which stand still until the tick is over, so batches can be moved on
+ * different threads. Merging their records in ball order afterwards gives the same game as
+ * moving every ball on one thread.
+ */
+final class BallBatch implements Runnable {
+
+    private final GameEngine mEngine;
+
+    /**
+     * Scratch space for moving the balls.
+     */
+    final Sweep           sweep = new Sweep();
+    final BrickGrid.Query query = new BrickGrid.Query();
+    int[]                 hitBricks = new int[4];
+
+    int from;
+    int to;
+
+    /**
+     * Bricks hit, once per hit, and balls that reached a goal, both in the order it happened.
+     */
+    int[] damaged = new int[16];
+    int   damagedCount;
+    int[] goals   = new int[4];
+    int   goalCount;
+
+    int humanHits;
+    int computerHits;
+
+    /**
+     * Thrown while moving the balls on another thread, rethrown on the game thread.
+     * Errors too, a worker dying quietly would leave the tick half done.
+     */
+    Throwable failure;
+
+    BallBatch(GameEngine engine) {
+        mEngine = engine;
+    }
+
+    /**
+     * Forget the last tick and take on the balls from index from up to, not including, to.
+     */
+    void reset(int from, int to) {
+        this.from = from;
+        this.to = to;
+        damagedCount = 0;
+        goalCount = 0;
+        humanHits = 0;
+        computerHits = 0;
+        failure = null;
+    }
+
+    void damage(int brick) {
+        if (damagedCount == damaged.length) {
+            int[] grown = new int[damagedCount * 2];
+            System.arraycopy(damaged, 0, grown, 0, damagedCount);
+            damaged = grown;
+        }
+        damaged[damagedCount++] = brick;
+    }
+
+    void goal(int ball) {
+        if (goalCount == goals.length) {
+            int[] grown = new int[goalCount * 2];
+            System.arraycopy(goals, 0, grown, 0, goalCount);
+            goals = grown;
+        }
+        goals[goalCount++] = ball;
+    }
+
+    /**
+     * Move the balls on a worker thread.
+     */
+    @Override
+    public void run() {
+        try {
+            mEngine.moveBalls(this);
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            mEngine.batchDone();
+        }
+    }
+}
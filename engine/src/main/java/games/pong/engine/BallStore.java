@@ -0,0 +1,231 @@
+package games.pong.engine;
+
+/**
+ * Structure-of-arrays storage for the balls in play.
+ * Each property lives in its own array indexed by ball, so the physics loop
+ * walks a few dense float arrays instead of chasing one object per ball.
+ *
+ * Removing a ball during a tick only marks it; {@link #compact()} at the end of the tick
+ * fills the holes by moving the last balls into them. Indices can change at that point,
+ * handles from {@link #handle(int)} stay valid until the ball itself is removed.
+ */
+public class BallStore {
+
+    public static final int HANDLE_INDEX_BITS = 20;
+    public static final int HANDLE_INDEX_MASK = (1 << HANDLE_INDEX_BITS) - 1;
+
+    public float[] cx;
+    public float[] cy;
+    public float[] dx;
+    public float[] dy;
+    public float[] radius;
+
+    /**
+     * Position before the last physics step, for interpolated drawing.
+     */
+    public float[] prevCx;
+    public float[] prevCy;
+
+    private boolean[] mRemoved;
+    private int       mCount;
+    private int       mAliveCount;
+
+    /**
+     * Balls removed since the last {@link #compact()}.
+     */
+    private int[] mPending;
+    private int   mPendingCount;
+
+    /**
+     * Handle slots: the slot of each ball, the ball in each slot (-1 when free)
+     * and a generation per slot that makes handles of removed balls stale.
+     */
+    private int[] mSlotOf;
+    private int[] mIndexOf;
+    private int[] mGeneration;
+    private int[] mFreeSlots;
+    private int   mFreeSlotCount;
+    private int   mSlotCount;
+
+    public BallStore(int capacity) {
+        cx = new float[capacity];
+        cy = new float[capacity];
+        dx = new float[capacity];
+        dy = new float[capacity];
+        radius = new float[capacity];
+        prevCx = new float[capacity];
+        prevCy = new float[capacity];
+        mRemoved = new boolean[capacity];
+        mPending = new int[capacity];
+        mSlotOf = new int[capacity];
+        mIndexOf = new int[capacity];
+        mGeneration = new int[capacity];
+        mFreeSlots = new int[capacity];
+    }
+
+    /**
+     * @return the number of balls including those removed during this tick.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    public int aliveCount() {
+        return mAliveCount;
+    }
+
+    public boolean isAlive(int i) {
+        return !mRemoved[i];
+    }
+
+    /**
+     * @return the index of the new ball, at rest at the origin.
+     */
+    public int add(float ballRadius) {
+        if (mCount == cx.length) {
+            grow();
+        }
+        int i = mCount++;
+        cx[i] = cy[i] = dx[i] = dy[i] = prevCx[i] = prevCy[i] = 0;
+        radius[i] = ballRadius;
+        mRemoved[i] = false;
+        mAliveCount++;
+
+        int slot = mFreeSlotCount > 0 ? mFreeSlots[--mFreeSlotCount] : mSlotCount++;
+        mSlotOf[i] = slot;
+        mIndexOf[slot] = i;
+        return i;
+    }
+
+    /**
+     * Place a ball, with no previous position to draw it moving from.
+     */
+    public void set(int i, float ballCx, float ballCy, float ballDx, float ballDy) {
+        cx[i] = prevCx[i] = ballCx;
+        cy[i] = prevCy[i] = ballCy;
+        dx[i] = ballDx;
+        dy[i] = ballDy;
+    }
+
+    /**
+     * Mark a ball as removed. It stays in place until {@link #compact()}.
+     */
+    public void remove(int i) {
+        if (mRemoved[i]) {
+            return;
+        }
+        mRemoved[i] = true;
+        mAliveCount--;
+        mPending[mPendingCount++] = i;
+
+        int slot = mSlotOf[i];
+        mIndexOf[slot] = -1;
+        mGeneration[slot]++;
+        mFreeSlots[mFreeSlotCount++] = slot;
+    }
+
+    /**
+     * Drop the balls removed since the last call by moving the last balls into their places.
+     * Costs a constant amount per removed ball.
+     */
+    public void compact() {
+        // Latest removal first. The engine removes balls in index order, so the highest hole
+        // is filled first. Removed balls at the end are dropped rather than moved, so every
+        // ball is looked at once.
+        for (int k = mPendingCount - 1; k >= 0; k--) {
+            int i = mPending[k];
+            while (mCount > 0 && mRemoved[mCount - 1]) {
+                mCount--;
+            }
+            if (i < mCount) {
+                move(--mCount, i);
+            }
+        }
+        mPendingCount = 0;
+    }
+
+    public void clear() {
+        for (int slot = 0; slot < mSlotCount; slot++) {
+            if (mIndexOf[slot] >= 0) {
+                mGeneration[slot]++;
+            }
+        }
+        mCount = 0;
+        mAliveCount = 0;
+        mPendingCount = 0;
+        mSlotCount = 0;
+        mFreeSlotCount = 0;
+    }
+
+    /**
+     * @return a handle to the ball that survives {@link #compact()}.
+     */
+    public int handle(int i) {
+        int slot = mSlotOf[i];
+        return (mGeneration[slot] << HANDLE_INDEX_BITS) | slot;
+    }
+
+    /**
+     * @return the current index of the ball, or -1 if it has been removed since.
+     */
+    public int indexOf(int handle) {
+        int slot = handle & HANDLE_INDEX_MASK;
+        if (slot >= mSlotCount
+                || mGeneration[slot] << HANDLE_INDEX_BITS != (handle & ~HANDLE_INDEX_MASK)) {
+            return -1;
+        }
+        return mIndexOf[slot];
+    }
+
+    /**
+     * @return a view of the ball at the given index, for code off the hot path.
+     */
+    public Ball get(int i) {
+        return new Ball(this, i);
+    }
+
+    private void move(int from, int to) {
+        cx[to] = cx[from];
+        cy[to] = cy[from];
+        dx[to] = dx[from];
+        dy[to] = dy[from];
+        radius[to] = radius[from];
+        prevCx[to] = prevCx[from];
+        prevCy[to] = prevCy[from];
+        mRemoved[to] = mRemoved[from];
+        int slot = mSlotOf[from];
+        mSlotOf[to] = slot;
+        mIndexOf[slot] = to;
+    }
+
+    private void grow() {
+        int capacity = Math.max(4, cx.length * 2);
+        cx = copyOf(cx, capacity);
+        cy = copyOf(cy, capacity);
+        dx = copyOf(dx, capacity);
+        dy = copyOf(dy, capacity);
+        radius = copyOf(radius, capacity);
+        prevCx = copyOf(prevCx, capacity);
+        prevCy = copyOf(prevCy, capacity);
+        boolean[] removed = new boolean[capacity];
+        System.arraycopy(mRemoved, 0, removed, 0, mRemoved.length);
+        mRemoved = removed;
+        mPending = copyOf(mPending, capacity);
+        mSlotOf = copyOf(mSlotOf, capacity);
+        mIndexOf = copyOf(mIndexOf, capacity);
+        mGeneration = copyOf(mGeneration, capacity);
+        mFreeSlots = copyOf(mFreeSlots, capacity);
+    }
+
+    private static float[] copyOf(float[] array, int capacity) {
+        float[] copy = new float[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static int[] copyOf(int[] array, int capacity) {
+        int[] copy = new int[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+}
@@ -0,0 +1,41 @@
+package games.pong.engine;
+
+/**
+ * Brick.
+ * View of one brick in a {@link BrickStore}.
+ * Created by Isaiah on 3/25/2018.
+ */
+
+public class Brick {
+    private final BrickStore store;
+    private final int index;
+
+    Brick(BrickStore store, int index) {
+        this.store = store;
+        this.index = index;
+    }
+
+    public float getLeft() {
+        return store.left[index];
+    }
+
+    public float getTop() {
+        return store.top[index];
+    }
+
+    public float getRight() {
+        return store.right[index];
+    }
+
+    public float getBottom() {
+        return store.bottom[index];
+    }
+
+    public int getHealth() {
+        return store.health[index];
+    }
+
+    public boolean isAlive() {
+        return store.isAlive(index);
+    }
+}
@@ -0,0 +1,256 @@
+package games.pong.engine;
+
+/**
+ * Uniform grid over the brick field, one cell per brick size.
+ * Lets a ball look only at the bricks in the cells its bounding box overlaps
+ * instead of scanning every brick on every tick.
+ */
+class BrickGrid {
+
+    private final float mCellWidth;
+    private final float mCellHeight;
+
+    private float mOriginX;
+    private float mOriginY;
+    private int   mColumns;
+    private int   mRows;
+
+    /**
+     * Brick indices per cell, mCellSizes[c] of them are in use.
+     */
+    private int[][] mCells;
+    private int[]   mCellSizes;
+
+    /**
+     * Bricks in the store when the grid was built, one past the highest index.
+     */
+    private int mBrickCount;
+
+    /**
+     * For callers that don't bring their own.
+     */
+    private final Query mQuery;
+
+    /**
+     * The results of a query and what it needs to find them. Queries only read the grid,
+     * so threads can query the same grid at once, each with its own Query.
+     */
+    static final class Query {
+
+        /**
+         * Per brick, the last query that reported it, so a brick spanning several cells
+         * is only reported once.
+         */
+        private int[] mStamps = new int[0];
+        private int   mStamp;
+
+        private int[] mResults = new int[16];
+        private int   mCount;
+
+        int result(int k) {
+            return mResults[k];
+        }
+
+        private void add(int brick) {
+            if (mCount == mResults.length) {
+                int[] results = new int[mResults.length * 2];
+                System.arraycopy(mResults, 0, results, 0, mCount);
+                mResults = results;
+            }
+            mResults[mCount++] = brick;
+        }
+    }
+
+    BrickGrid(float cellWidth, float cellHeight) {
+        mCellWidth = cellWidth;
+        mCellHeight = cellHeight;
+        mCells = new int[0][];
+        mCellSizes = new int[0];
+        mQuery = new Query();
+    }
+
+    /**
+     * Drop the current contents and index the standing bricks of the store.
+     * The grid is sized to the bounding box of the bricks.
+     */
+    void rebuild(BrickStore bricks) {
+        for (int c = 0; c < mCellSizes.length; c++) {
+            mCellSizes[c] = 0;
+        }
+        mColumns = 0;
+        mRows = 0;
+        if (bricks.aliveCount() == 0) {
+            return;
+        }
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = bricks.nextAlive(0); i >= 0; i = bricks.nextAlive(i + 1)) {
+            minX = Math.min(minX, bricks.left[i]);
+            minY = Math.min(minY, bricks.top[i]);
+            maxX = Math.max(maxX, bricks.right[i]);
+            maxY = Math.max(maxY, bricks.bottom[i]);
+        }
+        mOriginX = minX;
+        mOriginY = minY;
+        mColumns = (int) Math.ceil((maxX - minX) / mCellWidth) + 1;
+        mRows = (int) Math.ceil((maxY - minY) / mCellHeight) + 1;
+
+        int cellCount = mColumns * mRows;
+        if (mCells.length < cellCount) {
+            int[][] cells = new int[cellCount][];
+            System.arraycopy(mCells, 0, cells, 0, mCells.length);
+            for (int c = mCells.length; c < cellCount; c++) {
+                cells[c] = new int[2];
+            }
+            mCells = cells;
+            mCellSizes = new int[cellCount];
+        }
+        mBrickCount = bricks.size();
+        reserve(mQuery);
+
+        for (int i = bricks.nextAlive(0); i >= 0; i = bricks.nextAlive(i + 1)) {
+            insert(bricks, i);
+        }
+    }
+
+    void remove(BrickStore bricks, int brick) {
+        int firstCol = column(bricks.left[brick]);
+        int lastCol = lastColumn(bricks.right[brick], firstCol);
+        int firstRow = row(bricks.top[brick]);
+        int lastRow = lastRow(bricks.bottom[brick], firstRow);
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                int cell = r * mColumns + c;
+                int[] entries = mCells[cell];
+                int size = mCellSizes[cell];
+                for (int k = 0; k < size; k++) {
+                    if (entries[k] == brick) {
+                        System.arraycopy(entries, k + 1, entries, k, size - k - 1);
+                        mCellSizes[cell] = size - 1;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect every brick whose cell overlaps the given box, in ascending index order.
+     *
+     * @return the number of bricks found, read them with {@link #result(int)}.
+     */
+    int query(float left, float top, float right, float bottom) {
+        return query(mQuery, left, top, right, bottom);
+    }
+
+    int result(int k) {
+        return mQuery.mResults[k];
+    }
+
+    /**
+     * Make room in the query for the bricks of this grid, so querying it doesn't allocate.
+     */
+    void reserve(Query query) {
+        if (query.mStamps.length < mBrickCount) {
+            query.mStamps = new int[mBrickCount];
+        }
+    }
+
+    /**
+     * Like {@link #query(float, float, float, float)}, with the results in the given query.
+     */
+    int query(Query query, float left, float top, float right, float bottom) {
+        query.mCount = 0;
+        if (mColumns == 0
+                || right < mOriginX || left > mOriginX + mColumns * mCellWidth
+                || bottom < mOriginY || top > mOriginY + mRows * mCellHeight) {
+            return 0;
+        }
+        reserve(query);
+        final int[] stamps = query.mStamps;
+        final int stamp = ++query.mStamp;
+
+        int firstCol = column(left);
+        int lastCol = column(right);
+        int firstRow = row(top);
+        int lastRow = row(bottom);
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                int cell = r * mColumns + c;
+                int[] entries = mCells[cell];
+                int size = mCellSizes[cell];
+                for (int k = 0; k < size; k++) {
+                    int brick = entries[k];
+                    if (stamps[brick] != stamp) {
+                        stamps[brick] = stamp;
+                        query.add(brick);
+                    }
+                }
+            }
+        }
+
+        // Keep the original scan order so corner resolution picks the same corner.
+        final int[] results = query.mResults;
+        for (int i = 1; i < query.mCount; i++) {
+            int brick = results[i];
+            int j = i - 1;
+            while (j >= 0 && results[j] > brick) {
+                results[j + 1] = results[j];
+                j--;
+            }
+            results[j + 1] = brick;
+        }
+        return query.mCount;
+    }
+
+    private void insert(BrickStore bricks, int brick) {
+        int firstCol = column(bricks.left[brick]);
+        int lastCol = lastColumn(bricks.right[brick], firstCol);
+        int firstRow = row(bricks.top[brick]);
+        int lastRow = lastRow(bricks.bottom[brick], firstRow);
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                int cell = r * mColumns + c;
+                int size = mCellSizes[cell];
+                if (size == mCells[cell].length) {
+                    int[] entries = new int[size * 2];
+                    System.arraycopy(mCells[cell], 0, entries, 0, size);
+                    mCells[cell] = entries;
+                }
+                mCells[cell][size] = brick;
+                mCellSizes[cell] = size + 1;
+            }
+        }
+    }
+
+    private int column(float x) {
+        return clamp((int) Math.floor((x - mOriginX) / mCellWidth), mColumns);
+    }
+
+    private int row(float y) {
+        return clamp((int) Math.floor((y - mOriginY) / mCellHeight), mRows);
+    }
+
+    /**
+     * A brick's right edge sits on the next cell boundary, so it does not belong to that cell.
+     */
+    private int lastColumn(float x, int firstCol) {
+        return Math.max(firstCol,
+                clamp((int) Math.ceil((x - mOriginX) / mCellWidth) - 1, mColumns));
+    }
+
+    private int lastRow(float y, int firstRow) {
+        return Math.max(firstRow,
+                clamp((int) Math.ceil((y - mOriginY) / mCellHeight) - 1, mRows));
+    }
+
+    private static int clamp(int index, int count) {
+        if (index < 0) {
+            return 0;
+        }
+        return index >= count ? count - 1 : index;
+    }
+}
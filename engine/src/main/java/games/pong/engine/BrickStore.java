@@ -0,0 +1,197 @@
+package games.pong.engine;
+
+/**
+ * Structure-of-arrays storage for the bricks of a round.
+ * Coordinates and health live in parallel arrays indexed by brick,
+ * and a bitset tracks which bricks are still standing. Removing a brick only
+ * clears its bit, and scanning the field skips destroyed bricks 64 at a time.
+ *
+ * Bricks never move, so an index stays valid while the brick stands. Slots of removed
+ * bricks are recycled through a free list once {@link #endTick()} is called, and handles
+ * from {@link #handle(int)} tell a recycled slot apart from the brick that used to be there.
+ */
+public class BrickStore {
+
+    public static final int HANDLE_INDEX_BITS = 20;
+    public static final int HANDLE_INDEX_MASK = (1 << HANDLE_INDEX_BITS) - 1;
+
+    public float[] left;
+    public float[] top;
+    public float[] right;
+    public float[] bottom;
+    public int[]   health;
+
+    private long[] mAlive;
+    private int    mCount;
+    private int    mAliveCount;
+    private int[]  mGeneration;
+
+    /**
+     * Slots removed during the current tick, and slots free for reuse.
+     */
+    private int[] mPending;
+    private int   mPendingCount;
+    private int[] mFree;
+    private int   mFreeCount;
+
+    public BrickStore(int capacity) {
+        left = new float[capacity];
+        top = new float[capacity];
+        right = new float[capacity];
+        bottom = new float[capacity];
+        health = new int[capacity];
+        mAlive = new long[(capacity + 63) >>> 6];
+        mGeneration = new int[capacity];
+        mPending = new int[capacity];
+        mFree = new int[capacity];
+    }
+
+    /**
+     * @return one past the highest index in use since the last {@link #clear()}.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    public int aliveCount() {
+        return mAliveCount;
+    }
+
+    /**
+     * @return the index of the new brick.
+     */
+    public int add(float l, float t, float r, float b, int brickHealth) {
+        int i;
+        if (mFreeCount > 0) {
+            i = mFree[--mFreeCount];
+        } else {
+            if (mCount == left.length) {
+                grow();
+            }
+            i = mCount++;
+        }
+        left[i] = l;
+        top[i] = t;
+        right[i] = r;
+        bottom[i] = b;
+        health[i] = brickHealth;
+        mAlive[i >>> 6] |= 1L << i;
+        mAliveCount++;
+        return i;
+    }
+
+    /**
+     * Knock a brick down. Its slot is only reused after {@link #endTick()},
+     * so indices gathered earlier in the tick never point at a different brick.
+     */
+    public void remove(int i) {
+        if (isAlive(i)) {
+            mAlive[i >>> 6] &= ~(1L << i);
+            mAliveCount--;
+            mPending[mPendingCount++] = i;
+        }
+    }
+
+    /**
+     * Release the slots of the bricks removed during this tick.
+     */
+    public void endTick() {
+        for (int k = 0; k < mPendingCount; k++) {
+            int i = mPending[k];
+            mGeneration[i]++;
+            mFree[mFreeCount++] = i;
+        }
+        mPendingCount = 0;
+    }
+
+    /**
+     * @return a handle to the brick that goes stale once the brick is removed.
+     */
+    public int handle(int i) {
+        return (mGeneration[i] << HANDLE_INDEX_BITS) | i;
+    }
+
+    /**
+     * @return the index of the brick, or -1 if it has been removed since.
+     */
+    public int indexOf(int handle) {
+        int i = handle & HANDLE_INDEX_MASK;
+        if (i >= mCount || !isAlive(i)
+                || mGeneration[i] << HANDLE_INDEX_BITS != (handle & ~HANDLE_INDEX_MASK)) {
+            return -1;
+        }
+        return i;
+    }
+
+    public boolean isAlive(int i) {
+        return (mAlive[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * @return the first standing brick at or after from, or -1 if there is none.
+     */
+    public int nextAlive(int from) {
+        if (from >= mCount) {
+            return -1;
+        }
+        int word = from >>> 6;
+        long bits = mAlive[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return i < mCount ? i : -1;
+            }
+            if (++word >= mAlive.length) {
+                return -1;
+            }
+            bits = mAlive[word];
+        }
+    }
+
+    public void clear() {
+        for (int w = 0; w < mAlive.length; w++) {
+            mAlive[w] = 0;
+        }
+        for (int i = 0; i < mCount; i++) {
+            mGeneration[i]++;
+        }
+        mCount = 0;
+        mAliveCount = 0;
+        mPendingCount = 0;
+        mFreeCount = 0;
+    }
+
+    /**
+     * @return a view of the brick at the given index, for code off the hot path.
+     */
+    public Brick get(int i) {
+        return new Brick(this, i);
+    }
+
+    private void grow() {
+        int capacity = Math.max(64, left.length * 2);
+        left = copyOf(left, capacity);
+        top = copyOf(top, capacity);
+        right = copyOf(right, capacity);
+        bottom = copyOf(bottom, capacity);
+        health = copyOf(health, capacity);
+        mGeneration = copyOf(mGeneration, capacity);
+        mPending = copyOf(mPending, capacity);
+        mFree = copyOf(mFree, capacity);
+        long[] alive = new long[(capacity + 63) >>> 6];
+        System.arraycopy(mAlive, 0, alive, 0, mAlive.length);
+        mAlive = alive;
+    }
+
+    private static float[] copyOf(float[] array, int capacity) {
+        float[] copy = new float[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static int[] copyOf(int[] array, int capacity) {
+        int[] copy = new int[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+}
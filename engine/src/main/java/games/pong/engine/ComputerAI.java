@@ -0,0 +1,284 @@
+package games.pong.engine;
+
+/**
+ * Moves the computer paddle to where the most threatening ball will cross it.
+ * The ball's path is cast ahead through wall and brick bounces with the same swept tests
+ * the physics uses. The prediction is kept until something changes that path: the ball
+ * is hit by a paddle, a brick falls or another ball becomes the threat.
+ *
+ * Casting is split into short steps and resumed on the next tick once a tick's work budget is
+ * spent, so the cost per tick stays flat however long the path or full the field. The budget
+ * counts swept tests rather than time, so games stay deterministic and replays stay valid.
+ */
+class ComputerAI {
+
+    /**
+     * Swept tests per tick, a few microseconds on a phone.
+     */
+    static final int WORK_PER_TICK = 256;
+
+    /**
+     * Longest cast step. Keeps the brick query of a step down to a few cells.
+     */
+    private static final float STEP_LENGTH = 200;
+
+    /**
+     * Per difficulty: chance to move in a tick, fraction of the full paddle speed,
+     * bounces to look ahead (-1 to just follow the ball) and how far off the prediction
+     * may be, in paddle heights.
+     */
+    private static final float[] MOVE_PROBABILITY = {0.5f, 0.6f, 0.8f};
+    private static final float[] SPEED            = {0.5f, 0.75f, 1};
+    private static final int[]   LOOK_AHEAD       = {-1, 2, 8};
+    private static final float[] AIM_ERROR        = {0, 0.65f, 0.1f};
+
+    private final GameEngine mEngine;
+    private final Sweep      mSweep;
+    private final float      mPaddleSpeed;
+
+    private int mDifficulty;
+
+    /**
+     * What the prediction was started from. It is dropped when any of these change.
+     */
+    private int   mBall = -1;
+    private float mBallDx;
+    private float mBallDy;
+    private int   mBrickVersion;
+
+    /**
+     * The cast in progress: position, velocity, bounces so far and the last brick bounced off.
+     */
+    private float   mX;
+    private float   mY;
+    private float   mDx;
+    private float   mDy;
+    private int     mBounces;
+    private int     mLastBrick;
+    private boolean mCasting;
+
+    private boolean mPredicted;
+    private float   mTargetY;
+    private float   mAimError;
+
+    /**
+     * Work done in the current tick, and in total for benchmarks.
+     */
+    private int  mWork;
+    private long mTotalWork;
+
+    ComputerAI(GameEngine engine, float paddleSpeed) {
+        mEngine = engine;
+        mSweep = new Sweep();
+        mPaddleSpeed = paddleSpeed;
+        mDifficulty = GameEngine.DIFFICULTY_NORMAL;
+    }
+
+    int getDifficulty() {
+        return mDifficulty;
+    }
+
+    void setDifficulty(int difficulty) {
+        if (difficulty < 0 || difficulty >= LOOK_AHEAD.length) {
+            throw new IllegalArgumentException("Unknown difficulty " + difficulty);
+        }
+        mDifficulty = difficulty;
+        reset();
+    }
+
+    /**
+     * Forget the current prediction, e.g. for a new round.
+     */
+    void reset() {
+        mBall = -1;
+        mCasting = false;
+        mPredicted = false;
+    }
+
+    long getTotalWork() {
+        return mTotalWork;
+    }
+
+    /**
+     * Run once per tick: update the prediction within the budget and move the paddle.
+     */
+    void update() {
+        final BallStore balls = mEngine.getBalls();
+        final Player paddle = mEngine.getComputerPlayer();
+        int ball = threat(balls, paddle);
+        if (ball < 0) {
+            reset();
+            return;
+        }
+        boolean move = mEngine.random().nextFloat() < MOVE_PROBABILITY[mDifficulty];
+
+        float targetY;
+        if (LOOK_AHEAD[mDifficulty] < 0 || balls.dx[ball] <= 0) {
+            reset();
+            targetY = balls.cy[ball];
+        } else {
+            int handle = balls.handle(ball);
+            if (handle != mBall || balls.dx[ball] != mBallDx
+                    || Math.abs(balls.dy[ball]) != Math.abs(mBallDy)
+                    || mEngine.getBrickVersion() != mBrickVersion) {
+                startCast(balls, ball, handle);
+            }
+            if (mCasting) {
+                cast(balls.radius[ball], paddle.left - balls.radius[ball]);
+            }
+            // Until the cast is done, or if it gave up, the ball itself has to do.
+            targetY = mPredicted ? mTargetY + mAimError : balls.cy[ball];
+        }
+
+        if (move) {
+            float speed = mPaddleSpeed * SPEED[mDifficulty];
+            float dy = targetY - (paddle.top + paddle.paddleHeight / 2);
+            dy = Math.max(-speed, Math.min(speed, dy));
+            if (dy != 0) {
+                mEngine.movePlayer(paddle, paddle.left, paddle.top + dy);
+            }
+        }
+    }
+
+    /**
+     * @return the ball coming at the computer that will get there first, or if none is,
+     * the ball closest to its side. -1 if there are no balls.
+     */
+    private int threat(BallStore balls, Player paddle) {
+        int threat = -1;
+        float threatTime = Float.MAX_VALUE;
+        int nearest = -1;
+        float nearestDistance = Float.MAX_VALUE;
+        for (int i = 0; i < balls.size(); i++) {
+            if (!balls.isAlive(i)) {
+                continue;
+            }
+            float distance = paddle.left - balls.cx[i];
+            if (balls.dx[i] > 0) {
+                float time = distance / balls.dx[i];
+                if (time < threatTime) {
+                    threatTime = time;
+                    threat = i;
+                }
+            } else if (Math.abs(distance) < nearestDistance) {
+                nearestDistance = Math.abs(distance);
+                nearest = i;
+            }
+        }
+        return threat >= 0 ? threat : nearest;
+    }
+
+    private void startCast(BallStore balls, int ball, int handle) {
+        mBall = handle;
+        mBallDx = balls.dx[ball];
+        mBallDy = balls.dy[ball];
+        mBrickVersion = mEngine.getBrickVersion();
+        mX = balls.cx[ball];
+        mY = balls.cy[ball];
+        mDx = balls.dx[ball];
+        mDy = balls.dy[ball];
+        mBounces = 0;
+        mLastBrick = -1;
+        mCasting = true;
+        mPredicted = false;
+        float error = AIM_ERROR[mDifficulty] * mEngine.getComputerPlayer().paddleHeight;
+        mAimError = (mEngine.random().nextFloat() * 2 - 1) * error;
+    }
+
+    /**
+     * Advance the cast towards the plane the ball centre is in when it touches the paddle,
+     * until it gets there or the tick's budget is spent.
+     */
+    private void cast(float radius, float targetX) {
+        final BrickStore bricks = mEngine.getBricks();
+        final BrickGrid grid = mEngine.getBrickGrid();
+        final float height = mEngine.getHeight();
+        mWork = 0;
+        while (mCasting && mWork < WORK_PER_TICK) {
+            if (mDx <= 0 || mBounces > LOOK_AHEAD[mDifficulty]) {
+                // Bounced back or too far ahead to tell.
+                mCasting = false;
+                break;
+            }
+            // Step to the target plane, but no further than a step length.
+            float time = (targetX - mX) / mDx;
+            float speed = (float) Math.sqrt(mDx * mDx + mDy * mDy);
+            boolean last = time * speed <= STEP_LENGTH;
+            if (!last) {
+                time = STEP_LENGTH / speed;
+            }
+            float dx = mDx * time;
+            float dy = mDy * time;
+
+            float hitTime = 1;
+            boolean wall = false;
+            if (dy < 0 && mY + dy < radius) {
+                hitTime = Math.max(0, (radius - mY) / dy);
+                wall = true;
+            } else if (dy > 0 && mY + dy > height - 1 - radius) {
+                hitTime = Math.max(0, (height - 1 - radius - mY) / dy);
+                wall = true;
+            }
+
+            int hitBrick = -1;
+            int nearby = grid.query(Math.min(mX, mX + dx) - radius, Math.min(mY, mY + dy) - radius,
+                    Math.max(mX, mX + dx) + radius, Math.max(mY, mY + dy) + radius);
+            float normalX = 0;
+            float normalY = 0;
+            for (int j = 0; j < nearby; j++) {
+                int brick = grid.result(j);
+                mWork++;
+                if (brick == mLastBrick || !bricks.isAlive(brick)
+                        || !mSweep.circleRect(mX, mY, dx, dy, radius,
+                        bricks.left[brick], bricks.top[brick],
+                        bricks.right[brick], bricks.bottom[brick], hitTime)) {
+                    continue;
+                }
+                if (hitBrick < 0 || mSweep.time < hitTime) {
+                    hitTime = mSweep.time;
+                    hitBrick = brick;
+                    normalX = mSweep.normalX;
+                    normalY = mSweep.normalY;
+                }
+            }
+            mWork++;
+
+            mX += dx * hitTime;
+            mY += dy * hitTime;
+            if (hitBrick >= 0) {
+                // Don't bounce off the same brick again straight away.
+                float dot = mDx * normalX + mDy * normalY;
+                mDx -= 2 * dot * normalX;
+                mDy -= 2 * dot * normalY;
+                mLastBrick = hitBrick;
+                mBounces++;
+            } else if (wall) {
+                mDy = -mDy;
+                mBounces++;
+            } else if (last) {
+                finish(mY);
+            }
+        }
+        mTotalWork += mWork;
+    }
+
+    private void finish(float y) {
+        mCasting = false;
+        mPredicted = true;
+        mTargetY = y;
+    }
+
+    /**
+     * @return the predicted crossing, cast to completion regardless of the budget,
+     * or NaN if the cast gave up. For tests.
+     */
+    float predict(int ball) {
+        final BallStore balls = mEngine.getBalls();
+        reset();
+        startCast(balls, ball, balls.handle(ball));
+        while (mCasting) {
+            cast(balls.radius[ball], mEngine.getComputerPlayer().left - balls.radius[ball]);
+        }
+        return mPredicted ? mTargetY : Float.NaN;
+    }
+}
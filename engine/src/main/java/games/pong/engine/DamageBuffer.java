@@ -0,0 +1,74 @@
+package games.pong.engine;
+
+/**
+ * Damage dealt to bricks during one tick, applied in one pass once every ball has moved.
+ * Until then the bricks stand as they were at the start of the tick, so no ball sees
+ * the field change under it and the cost of knocking bricks down doesn't depend on
+ * the order the balls are moved in.
+ */
+class DamageBuffer {
+
+    /**
+     * Damage per brick index, and the damaged bricks in the order they were first hit.
+     */
+    private int[] mDamage;
+    private int[] mBricks;
+    private int   mCount;
+
+    DamageBuffer() {
+        mDamage = new int[0];
+        mBricks = new int[16];
+    }
+
+    /**
+     * Make room for damage to every brick below the given index, so ticks don't allocate.
+     */
+    void reserve(int bricks) {
+        if (mDamage.length < bricks) {
+            int[] grown = new int[bricks];
+            System.arraycopy(mDamage, 0, grown, 0, mDamage.length);
+            mDamage = grown;
+        }
+        if (mBricks.length < bricks) {
+            int[] grown = new int[bricks];
+            System.arraycopy(mBricks, 0, grown, 0, mCount);
+            mBricks = grown;
+        }
+    }
+
+    void add(int brick, int damage) {
+        if (brick >= mDamage.length) {
+            int[] grown = new int[Math.max(brick + 1, mDamage.length * 2)];
+            System.arraycopy(mDamage, 0, grown, 0, mDamage.length);
+            mDamage = grown;
+        }
+        if (mDamage[brick] == 0) {
+            if (mCount == mBricks.length) {
+                int[] grown = new int[mCount * 2];
+                System.arraycopy(mBricks, 0, grown, 0, mCount);
+                mBricks = grown;
+            }
+            mBricks[mCount++] = brick;
+        }
+        mDamage[brick] += damage;
+    }
+
+    int size() {
+        return mCount;
+    }
+
+    int brick(int k) {
+        return mBricks[k];
+    }
+
+    int damage(int k) {
+        return mDamage[mBricks[k]];
+    }
+
+    void clear() {
+        for (int k = 0; k < mCount; k++) {
+            mDamage[mBricks[k]] = 0;
+        }
+        mCount = 0;
+    }
+}
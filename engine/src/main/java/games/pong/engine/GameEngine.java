@@ -0,0 +1,1172 @@
+package games.pong.engine;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Game logic of Pong with bricks: physics, collisions, the computer player and level setup.
+ * Pure Java with no Android dependencies, so it can be run, tested and benchmarked on any JVM.
+ * Not thread safe, the caller serializes access. The one exception is the next round's level,
+ * which may be generated on the executor given to {@link #setLevelExecutor(Executor)}.
+ * Based on existing code found at:
+ * https://github.com/catalinc/pong-game-android
+ */
+public class GameEngine {
+
+    /**
+     * Physics steps per second, all speeds are per step.
+     */
+    public static final int PHYS_TICK_RATE = 120;
+
+    public static final int DIFFICULTY_EASY   = 0;
+    public static final int DIFFICULTY_NORMAL = 1;
+    public static final int DIFFICULTY_HARD   = 2;
+
+    private static final int    PHYS_BALL_SPEED       = 10; // per physics tick
+    private static final int    PHYS_PADDLE_SPEED     = 20; // per physics tick
+    private static final double PHYS_MAX_BOUNCE_ANGLE = 5 * Math.PI / 12; // 75 degrees in radians
+    private static final int    PHYS_COLLISION_FRAMES = 10; // physics ticks
+    private static final int    PHYS_MAX_BOUNCES      = 4;
+
+    /**
+     * Fewest balls per batch worth handing to another thread.
+     */
+    private static final int MIN_BATCH_BALLS = 128;
+
+    private static final float BRICK_HEIGHT = 100;
+    private static final float BRICK_WIDTH = 100;
+    private static final float BRICK_DENSITY = 0.7f;
+
+    private static final int TOP_BOTTOM_HIT = 1;
+    private static final int LEFT_RIGHT_HIT = 2;
+    private static final int TOP_LEFT_HIT = 3;
+    private static final int BOTTOM_LEFT_HIT = 4;
+    private static final int TOP_RIGHT_HIT = 5;
+    private static final int BOTTOM_RIGHT_HIT = 6;
+
+    private static final int NO_HIT = 0;
+    private static final int WALL_HIT = 1;
+    private static final int GOAL_HIT = 2;
+    private static final int PADDLE_HIT = 3;
+    private static final int BRICK_HIT = 4;
+
+    private final Player     mHumanPlayer;
+    private final Player     mComputerPlayer;
+    private final BallStore  mBalls;
+
+    /**
+     * The bricks in play, and the next round's bricks being generated and indexed.
+     * A new round swaps the two.
+     */
+    private BrickStore mBricks;
+    private BrickGrid  mBrickGrid;
+    private BrickStore mNextBricks;
+    private BrickGrid  mNextBrickGrid;
+
+    /**
+     * The balls of a tick, split into batches that are moved on the collision executor.
+     * The first batch, and the only one without an executor, is moved on the calling thread.
+     */
+    private BallBatch[] mBatches;
+    private Executor    mCollisionExecutor;
+    private final Object mBatchLock = new Object();
+    private int          mPendingBatches;
+
+    /**
+     * Damage dealt by the balls this tick, applied after they all moved.
+     */
+    private final DamageBuffer mDamage;
+
+    /**
+     * Bumped whenever bricks are added, damaged or removed, so renderers know when to copy
+     * them again.
+     */
+    private int mBrickVersion;
+
+    /**
+     * Bumped whenever all bricks are replaced at once by a new round.
+     */
+    private int mBrickLayout;
+
+    private final int mBallRadius;
+    private int       mCanvasHeight;
+    private int       mCanvasWidth;
+
+    /**
+     * Used to make computer to "forget" to move the paddle like a human opponent.
+     */
+    private final Random mRandomGen;
+
+    private final ComputerAI mComputerAI;
+
+    /**
+     * The fraction of brick positions filled when a round is set up.
+     */
+    private float mBrickDensity;
+
+    /**
+     * The most hits a brick takes.
+     */
+    private int mBrickHealth;
+
+    private LevelGenerator mLevelGenerator;
+    private Executor       mLevelExecutor;
+
+    /**
+     * Whether the levels are the classic layout built from the brick density and health,
+     * rather than from a generator set on purpose.
+     */
+    private boolean mClassicLevels;
+
+    /**
+     * Generation of the next round's level into mNextBricks, null if none was started,
+     * and what it was started for.
+     */
+    private FutureTask<Void> mNextLevel;
+    private long             mNextLevelSeed;
+    private LevelGenerator   mNextLevelGenerator;
+    private int              mNextLevelWidth;
+    private int              mNextLevelHeight;
+
+    /**
+     * Logs everything that changes the course of the game, null when not recording.
+     */
+    private ReplayRecorder mRecorder;
+
+    /**
+     * Running totals, for statistics over many games.
+     */
+    private long mPaddleHits;
+    private long mBricksBroken;
+
+    public GameEngine(int paddleWidth, int paddleHeight, int ballRadius, Random random) {
+        mHumanPlayer = new Player(paddleWidth, paddleHeight);
+        mComputerPlayer = new Player(paddleWidth, paddleHeight);
+        mBallRadius = ballRadius;
+
+        mBalls = new BallStore(4);
+        mBalls.add(mBallRadius);
+
+        mCanvasHeight = 1;
+        mCanvasWidth = 1;
+
+        mRandomGen = random;
+        mBrickDensity = BRICK_DENSITY;
+        mBrickHealth = 1;
+        mClassicLevels = true;
+        mLevelGenerator = new SymmetricLevelGenerator(BRICK_DENSITY);
+
+        mBricks = new BrickStore(256);
+        mBrickGrid = new BrickGrid(BRICK_WIDTH, BRICK_HEIGHT);
+        mNextBricks = new BrickStore(256);
+        mNextBrickGrid = new BrickGrid(BRICK_WIDTH, BRICK_HEIGHT);
+        mDamage = new DamageBuffer();
+        mBatches = new BallBatch[] {new BallBatch(this)};
+        mComputerAI = new ComputerAI(this, PHYS_PADDLE_SPEED);
+    }
+
+    public Player getHumanPlayer() {
+        return mHumanPlayer;
+    }
+
+    public Player getComputerPlayer() {
+        return mComputerPlayer;
+    }
+
+    public BallStore getBalls() {
+        return mBalls;
+    }
+
+    public BrickStore getBricks() {
+        return mBricks;
+    }
+
+    public int getBrickVersion() {
+        return mBrickVersion;
+    }
+
+    /**
+     * @return a number that changes whenever a new round replaces all bricks, and with them
+     * the store behind {@link #getBricks()}. Brick handles from different layouts may clash.
+     */
+    public int getBrickLayout() {
+        return mBrickLayout;
+    }
+
+    public int getBallRadius() {
+        return mBallRadius;
+    }
+
+    public int getWidth() {
+        return mCanvasWidth;
+    }
+
+    public int getHeight() {
+        return mCanvasHeight;
+    }
+
+    /**
+     * Resize the playing field. Call {@link #setupNewRound()} afterwards.
+     */
+    public void setSize(int width, int height) {
+        mCanvasWidth = width;
+        mCanvasHeight = height;
+        if (mRecorder != null) {
+            mRecorder.resized(width, height);
+        }
+    }
+
+    public int getDifficulty() {
+        return mComputerAI.getDifficulty();
+    }
+
+    /**
+     * @param difficulty how well the computer plays, one of the DIFFICULTY_* levels.
+     */
+    public void setDifficulty(int difficulty) {
+        mComputerAI.setDifficulty(difficulty);
+        if (mRecorder != null) {
+            mRecorder.difficultyChanged(difficulty);
+        }
+    }
+
+    public float getBrickDensity() {
+        return mBrickDensity;
+    }
+
+    /**
+     * Set the fraction of brick positions filled from the next round on, for the classic
+     * {@link SymmetricLevelGenerator} layout. A generator set with
+     * {@link #setLevelGenerator(LevelGenerator)} is kept.
+     */
+    public void setBrickDensity(float density) {
+        mBrickDensity = density;
+        if (mClassicLevels) {
+            mLevelGenerator = new SymmetricLevelGenerator(density, mBrickHealth);
+        }
+        if (mRecorder != null) {
+            mRecorder.brickDensityChanged(density);
+        }
+    }
+
+    public int getBrickHealth() {
+        return mBrickHealth;
+    }
+
+    /**
+     * Set the most hits a brick takes from the next round on, for the classic
+     * {@link SymmetricLevelGenerator} layout. Each brick gets a random health up to it.
+     * A generator set with {@link #setLevelGenerator(LevelGenerator)} is kept.
+     *
+     * @throws IllegalArgumentException if not between 1 and {@link Level#MAX_HEALTH}.
+     */
+    public void setBrickHealth(int health) {
+        if (health < 1 || health > Level.MAX_HEALTH) {
+            throw new IllegalArgumentException("Bad brick health " + health);
+        }
+        mBrickHealth = health;
+        if (mClassicLevels) {
+            mLevelGenerator = new SymmetricLevelGenerator(mBrickDensity, health);
+        }
+        if (mRecorder != null) {
+            mRecorder.brickHealthChanged(health);
+        }
+    }
+
+    public LevelGenerator getLevelGenerator() {
+        return mLevelGenerator;
+    }
+
+    /**
+     * Lay out the bricks with the given generator from the next round on, or with the classic
+     * layout from the brick density and health if null. Replays don't record the generator:
+     * they record the bricks of every round, and switching generators doesn't change the
+     * random sequence the rest of the game draws from.
+     */
+    public void setLevelGenerator(LevelGenerator generator) {
+        mClassicLevels = generator == null;
+        mLevelGenerator = generator != null
+                ? generator : new SymmetricLevelGenerator(mBrickDensity, mBrickHealth);
+    }
+
+    /**
+     * @param executor runs the generation of the next round's level while the current one is
+     *                 played, so starting a round only swaps the bricks. Null to generate on
+     *                 the calling thread when the round starts.
+     */
+    public void setLevelExecutor(Executor executor) {
+        mLevelExecutor = executor;
+    }
+
+    /**
+     * @return the number of times a ball hit a paddle since the engine was created.
+     */
+    public long getPaddleHits() {
+        return mPaddleHits;
+    }
+
+    /**
+     * @return the number of bricks knocked down since the engine was created.
+     */
+    public long getBricksBroken() {
+        return mBricksBroken;
+    }
+
+    /**
+     * @return the swept tests the computer player has spent on predictions so far.
+     */
+    public long getComputerWork() {
+        return mComputerAI.getTotalWork();
+    }
+
+    /**
+     * Move the balls of a tick on several threads once there are enough of them to be worth
+     * it. The game plays exactly the same as on one thread. Tracing builds stay on one
+     * thread, trace events aren't thread safe.
+     *
+     * @param executor runs the balls of all but one thread, null to move them all on the
+     *                 calling thread.
+     * @param threads  the most threads to spread the balls over, including the calling one.
+     */
+    public void setCollisionExecutor(Executor executor, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Bad thread count " + threads);
+        }
+        mCollisionExecutor = executor;
+        int batches = executor == null || GameTrace.ENABLED ? 1 : threads;
+        BallBatch[] grown = new BallBatch[batches];
+        for (int b = 0; b < batches; b++) {
+            grown[b] = b < mBatches.length ? mBatches[b] : new BallBatch(this);
+        }
+        mBatches = grown;
+        reserveBrickScratch();
+    }
+
+    /**
+     * Restart the random sequence, so the rest of the game only depends on the inputs.
+     */
+    public void setSeed(long seed) {
+        mRandomGen.setSeed(seed);
+        // A prediction cast before isn't in a saved game and would skip the random draw
+        // that starts the next one.
+        mComputerAI.reset();
+        // The next level was seeded from the old sequence.
+        if (mNextLevel != null) {
+            await(mNextLevel);
+            mNextLevel = null;
+        }
+    }
+
+    /**
+     * @param recorder notified of every tick and input from now on, null to stop recording.
+     */
+    public void setRecorder(ReplayRecorder recorder) {
+        mRecorder = recorder;
+    }
+
+    public void resetScores() {
+        mHumanPlayer.score = 0;
+        mComputerPlayer.score = 0;
+        if (mRecorder != null) {
+            mRecorder.scoresReset();
+        }
+    }
+
+    /**
+     * Advance the game by one physics step of 1 / {@link #PHYS_TICK_RATE} seconds.
+     *
+     * @return false if the round is over because the last ball was lost.
+     */
+    public boolean tick() {
+        savePositions();
+        boolean playing = updatePhysics();
+        applyDamage();
+        mBalls.compact();
+        mBricks.endTick();
+        if (mRecorder != null) {
+            mRecorder.ticked(this);
+        }
+        return playing;
+    }
+
+    /**
+     * Split the balls in play into more, e.g. for a multi-ball power-up. The new balls start
+     * where the existing ones are, taking turns, and fly off towards either goal at the
+     * ball speed, at up to the steepest paddle bounce angle. Balls never collide with each
+     * other, so thousands of them cost only their moves through the brick grid.
+     */
+    public void spawnBalls(int count) {
+        final BallStore balls = mBalls;
+        if (balls.aliveCount() == 0) {
+            return;
+        }
+        final int parents = balls.size();
+        int parent = -1;
+        for (int k = 0; k < count; k++) {
+            do {
+                parent = (parent + 1) % parents;
+            } while (!balls.isAlive(parent));
+            double angle = (mRandomGen.nextFloat() * 2 - 1) * PHYS_MAX_BOUNCE_ANGLE;
+            float direction = mRandomGen.nextBoolean() ? 1 : -1;
+            float cx = balls.cx[parent];
+            float cy = balls.cy[parent];
+            int ball = balls.add(mBallRadius);
+            balls.set(ball, cx, cy,
+                    (float) (direction * PHYS_BALL_SPEED * Math.cos(angle)),
+                    (float) (PHYS_BALL_SPEED * Math.sin(angle)));
+        }
+        if (mRecorder != null) {
+            mRecorder.ballsSpawned(count);
+        }
+    }
+
+    /**
+     * Move the human paddle by the given amount, e.g. when the player drags it.
+     */
+    public void moveHumanPaddle(float dy) {
+        movePlayer(mHumanPlayer, mHumanPlayer.left, mHumanPlayer.top + dy);
+        if (mRecorder != null) {
+            mRecorder.paddleMoved(dy);
+        }
+    }
+
+    /**
+     * Re-index the bricks after they were changed directly through {@link #getBricks()}.
+     */
+    public void bricksChanged() {
+        mBrickGrid.rebuild(mBricks);
+        mBrickVersion++;
+        reserveBrickScratch();
+    }
+
+    /**
+     * Size everything the balls keep per brick to the bricks in play, so ticks don't allocate.
+     */
+    private void reserveBrickScratch() {
+        mDamage.reserve(mBricks.size());
+        for (BallBatch batch : mBatches) {
+            mBrickGrid.reserve(batch.query);
+        }
+    }
+
+    /**
+     * Update paddle and player positions, check for collisions, win or lose.
+     *
+     * @return false if the last ball reached the left or right wall.
+     */
+    private boolean updatePhysics() {
+
+        if (mHumanPlayer.collision > 0) {
+            mHumanPlayer.collision--;
+        }
+        if (mComputerPlayer.collision > 0) {
+            mComputerPlayer.collision--;
+        }
+        mComputerAI.update();
+
+        final BallStore balls = mBalls;
+        int batches = Math.min(mBatches.length, Math.max(1, balls.size() / MIN_BATCH_BALLS));
+        for (int b = 0; b < batches; b++) {
+            mBatches[b].reset((int) ((long) balls.size() * b / batches),
+                    (int) ((long) balls.size() * (b + 1) / batches));
+        }
+        if (batches == 1) {
+            moveBalls(mBatches[0]);
+        } else {
+            moveBallsInParallel(batches);
+        }
+
+        // Merge in ball order, as if every ball had been moved on this thread.
+        for (int b = 0; b < batches; b++) {
+            BallBatch batch = mBatches[b];
+            for (int k = 0; k < batch.damagedCount; k++) {
+                mDamage.add(batch.damaged[k], 1);
+            }
+            mPaddleHits += batch.humanHits + batch.computerHits;
+            if (batch.humanHits > 0) {
+                mHumanPlayer.collision = PHYS_COLLISION_FRAMES;
+            }
+            if (batch.computerHits > 0) {
+                mComputerPlayer.collision = PHYS_COLLISION_FRAMES;
+            }
+        }
+        for (int b = 0; b < batches; b++) {
+            BallBatch batch = mBatches[b];
+            for (int k = 0; k < batch.goalCount; k++) {
+                int i = batch.goals[k];
+                if (balls.cx[i] < mCanvasWidth / 2) {
+                    mComputerPlayer.score++;
+                } else {
+                    mHumanPlayer.score++;   // human plays on left
+                }
+                if (balls.aliveCount() > 1) {
+                    balls.remove(i);
+                }
+                else {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Move the balls of a batch through the tick, recording what they hit in the batch.
+     * Only writes to the batch and its balls, see {@link BallBatch}.
+     */
+    void moveBalls(BallBatch batch) {
+        final BallStore balls = mBalls;
+        for (int i = batch.from; i < batch.to; i++) {
+            if (!balls.isAlive(i)) {
+                continue;
+            }
+            // A paddle can still be moved onto the ball between ticks.
+            if (balls.dx[i] < 0 && collision(mHumanPlayer, i)) {
+                handleCollision(mHumanPlayer, i);
+                batch.humanHits++;
+            } else if (balls.dx[i] > 0 && collision(mComputerPlayer, i)) {
+                handleCollision(mComputerPlayer, i);
+                batch.computerHits++;
+            }
+
+            resolveBrickOverlaps(batch, i);
+
+            if (!moveBall(batch, i)) {
+                batch.goal(i);
+            }
+        }
+    }
+
+    /**
+     * Move the first batch here and the others on the collision executor, and wait for all.
+     */
+    private void moveBallsInParallel(int batches) {
+        synchronized (mBatchLock) {
+            mPendingBatches = batches - 1;
+        }
+        for (int b = 1; b < batches; b++) {
+            try {
+                mCollisionExecutor.execute(mBatches[b]);
+            } catch (RejectedExecutionException e) {
+                // Shutting down, move them here instead.
+                mBatches[b].run();
+            }
+        }
+        try {
+            moveBalls(mBatches[0]);
+        } finally {
+            // Even if the first batch failed, so no worker is still moving balls.
+            awaitBatches();
+        }
+        for (int b = 1; b < batches; b++) {
+            Throwable failure = mBatches[b].failure;
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        }
+    }
+
+    private void awaitBatches() {
+        boolean interrupted = false;
+        synchronized (mBatchLock) {
+            while (mPendingBatches > 0) {
+                try {
+                    mBatchLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Called by a batch moved on the collision executor when it is done.
+     */
+    void batchDone() {
+        synchronized (mBatchLock) {
+            if (--mPendingBatches == 0) {
+                mBatchLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Bounce the ball off any brick it already overlaps, e.g. after a restore or a new round.
+     * Moving balls never end a tick inside a brick, see {@link #moveBall(BallBatch, int)}.
+     */
+    private void resolveBrickOverlaps(BallBatch batch, int ball) {
+        final BallStore balls = mBalls;
+        final BrickStore bricks = mBricks;
+
+        /* These flags prevent the ball from hitting a shared corner of two bricks and continue
+        to go in the same direction as before.
+         */
+        boolean pass = false;
+        boolean TLHit, TRHit, BLHit, BRHit;
+        TLHit = TRHit = BLHit = BRHit = false;
+        float cornerX, cornerY;
+        cornerX = cornerY = 0;
+
+        float radius = balls.radius[ball];
+        int nearby = mBrickGrid.query(batch.query, balls.cx[ball] - radius,
+                balls.cy[ball] - radius, balls.cx[ball] + radius, balls.cy[ball] + radius);
+        for (int j = 0; j<nearby; j++) {
+            int brick = batch.query.result(j);
+            if (!bricks.isAlive(brick)) {
+                continue;
+            }
+            int collisionStatus = collision(ball, brick);
+            if (collisionStatus > 0) {
+                if (collisionStatus == TOP_BOTTOM_HIT) {
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.EDGE_RESOLVED, TOP_BOTTOM_HIT, 0);
+                    }
+                    balls.dx[ball] = -balls.dx[ball];
+                    pass = true;
+                    batch.damage(brick);
+                    break;
+                } else if (collisionStatus == LEFT_RIGHT_HIT) {
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.EDGE_RESOLVED, LEFT_RIGHT_HIT, 0);
+                    }
+                    balls.dy[ball] = -balls.dy[ball];
+                    pass = true;
+                    batch.damage(brick);
+                    break;
+                } else if (collisionStatus == TOP_LEFT_HIT) {
+                    TLHit = true;
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.COLLISION_COUNTED, TOP_LEFT_HIT, 0);
+                    }
+                    if (!(TRHit || BLHit || BRHit)) {
+                        cornerX = bricks.left[brick];
+                        cornerY = bricks.top[brick];
+                    }
+                } else if (collisionStatus == TOP_RIGHT_HIT) {
+                    TRHit = true;
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.COLLISION_COUNTED, TOP_RIGHT_HIT, 0);
+                    }
+                    if (!(TLHit || BLHit || BRHit)) {
+                        cornerX = bricks.right[brick];
+                        cornerY = bricks.top[brick];
+                    }
+
+                } else if (collisionStatus == BOTTOM_LEFT_HIT) {
+                    BLHit = true;
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.COLLISION_COUNTED, BOTTOM_LEFT_HIT, 0);
+                    }
+                    if (!(TRHit || TLHit || BRHit)) {
+                        cornerX = bricks.left[brick];
+                        cornerY = bricks.bottom[brick];
+                    }
+
+                } else if (collisionStatus == BOTTOM_RIGHT_HIT) {
+                    BRHit = true;
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.COLLISION_COUNTED, BOTTOM_RIGHT_HIT, 0);
+                    }
+                    if (!(TRHit || BLHit || TLHit)) {
+                        cornerX = bricks.right[brick];
+                        cornerY = bricks.bottom[brick];
+                    }
+
+                }
+
+                batch.damage(brick);
+            }
+        }
+        if (!pass) { //TODO: REDO FOR NON-ALIGNED BRICKS
+            int corners = cornerCount(TLHit, TRHit, BLHit, BRHit);
+            if (corners >= 3) {
+                if (GameTrace.ENABLED) {
+                    GameTrace.event(GameTrace.CORNERS_RESOLVED, corners, 3);
+                }
+                balls.dx[ball] *= -1;
+                balls.dy[ball] *= -1;
+            }
+            if (corners == 2) {
+                if ((TLHit && TRHit) || (BLHit && BRHit)) {
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.CORNERS_RESOLVED, corners, 2);
+                    }
+                    balls.dy[ball] *= -1;
+                }
+                else if ((TLHit && BLHit) || (TRHit && BRHit)) {
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.CORNERS_RESOLVED, corners, 1);
+                    }
+                    balls.dx[ball] *= -1;
+                }
+                else {
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.CORNERS_RESOLVED, corners, 3);
+                    }
+                    balls.dx[ball] *= -1;
+                    balls.dy[ball] *= -1;
+                }
+            }
+            if (corners == 1) { //TODO: Ensure the ball doesn't bounce sideways for eternity
+                if (GameTrace.ENABLED) {
+                    GameTrace.event(GameTrace.VELOCITY_BEFORE, balls.dx[ball], balls.dy[ball]);
+                }
+                reflectOffCorner(ball, cornerX, cornerY);
+                if (GameTrace.ENABLED) {
+                    GameTrace.event(GameTrace.CORNERS_RESOLVED, corners, 0);
+                    GameTrace.event(GameTrace.VELOCITY_AFTER, balls.dx[ball], balls.dy[ball]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the ball for one tick. Walls, paddles and bricks are swept against the whole move
+     * and the ball bounces at the earliest time of impact, up to {@link #PHYS_MAX_BOUNCES}
+     * times per tick, so fast balls can't tunnel through anything.
+     *
+     * @return false if the ball reached the left or right wall.
+     */
+    private boolean moveBall(BallBatch batch, int ball) {
+        final BallStore balls = mBalls;
+        final BrickStore bricks = mBricks;
+        final Sweep sweep = batch.sweep;
+        final float radius = balls.radius[ball];
+
+        float remaining = 1;
+        for (int bounce = 0; bounce <= PHYS_MAX_BOUNCES && remaining > 0; bounce++) {
+            float cx = balls.cx[ball];
+            float cy = balls.cy[ball];
+            float dx = balls.dx[ball] * remaining;
+            float dy = balls.dy[ball] * remaining;
+            float hitTime = 1;
+            int hit = NO_HIT;
+            Player hitPlayer = null;
+
+            if (dy < 0) {
+                hitTime = Math.max(0, (radius - cy) / dy);
+                hit = hitTime <= 1 ? WALL_HIT : NO_HIT;
+            } else if (dy > 0) {
+                hitTime = Math.max(0, (mCanvasHeight - 1 - radius - cy) / dy);
+                hit = hitTime <= 1 ? WALL_HIT : NO_HIT;
+            }
+            hitTime = Math.min(hitTime, 1);
+
+            float goalTime = 2;
+            if (dx < 0) {
+                goalTime = Math.max(0, (radius - cx) / dx);
+            } else if (dx > 0) {
+                goalTime = Math.max(0, (mCanvasWidth - 1 - radius - cx) / dx);
+            }
+            if (goalTime <= hitTime) {
+                hitTime = goalTime;
+                hit = GOAL_HIT;
+            }
+
+            Player player = dx < 0 ? mHumanPlayer : mComputerPlayer;
+            if (dx != 0 && sweep.circleRect(cx, cy, dx, dy, radius,
+                    player.left, player.top,
+                    player.right, player.bottom, hitTime)) {
+                hitTime = sweep.time;
+                hit = PADDLE_HIT;
+                hitPlayer = player;
+            }
+
+            float normalX = 0;
+            float normalY = 0;
+            int hitBricks = 0;
+            int nearby = mBrickGrid.query(batch.query, Math.min(cx, cx + dx) - radius,
+                    Math.min(cy, cy + dy) - radius,
+                    Math.max(cx, cx + dx) + radius,
+                    Math.max(cy, cy + dy) + radius);
+            for (int j = 0; j < nearby; j++) {
+                int brick = batch.query.result(j);
+                if (!bricks.isAlive(brick)
+                        || !sweep.circleRect(cx, cy, dx, dy, radius,
+                        bricks.left[brick], bricks.top[brick],
+                        bricks.right[brick], bricks.bottom[brick],
+                        hitTime + Sweep.EPSILON)) {
+                    continue;
+                }
+                boolean earlier = sweep.time < hitTime - Sweep.EPSILON;
+                if (hit != BRICK_HIT && hit != NO_HIT && !earlier) {
+                    // Touched together with a wall or paddle. That bounce goes first and
+                    // the brick is swept again on the way out.
+                    continue;
+                }
+                if (hit != BRICK_HIT || earlier) {
+                    // Strictly earlier than anything else so far.
+                    hitTime = Math.min(hitTime, sweep.time);
+                    hit = BRICK_HIT;
+                    hitBricks = 0;
+                    normalX = 0;
+                    normalY = 0;
+                }
+                // Bricks touched at the same time bounce the ball off their combined surface.
+                if (hitBricks == batch.hitBricks.length) {
+                    int[] grown = new int[hitBricks * 2];
+                    System.arraycopy(batch.hitBricks, 0, grown, 0, hitBricks);
+                    batch.hitBricks = grown;
+                }
+                batch.hitBricks[hitBricks++] = brick;
+                normalX += sweep.normalX;
+                normalY += sweep.normalY;
+            }
+
+            balls.cx[ball] = cx + dx * hitTime;
+            balls.cy[ball] = cy + dy * hitTime;
+            remaining *= 1 - hitTime;
+
+            if (GameTrace.ENABLED && hit != NO_HIT) {
+                GameTrace.event(GameTrace.SWEEP_HIT, hit, hitTime);
+            }
+            if (hit == NO_HIT) {
+                break;
+            } else if (hit == WALL_HIT) {
+                balls.dy[ball] = -balls.dy[ball];
+            } else if (hit == GOAL_HIT) {
+                return false;
+            } else if (hit == PADDLE_HIT) {
+                handleCollision(hitPlayer, ball);
+                if (hitPlayer == mHumanPlayer) {
+                    batch.humanHits++;
+                } else {
+                    batch.computerHits++;
+                }
+            } else {
+                reflect(ball, normalX, normalY);
+                for (int j = 0; j < hitBricks; j++) {
+                    batch.damage(batch.hitBricks[j]);
+                }
+            }
+        }
+
+        if (balls.cy[ball] < radius) {
+            balls.cy[ball] = radius;
+        } else if (balls.cy[ball] + radius >= mCanvasHeight) {
+            balls.cy[ball] = mCanvasHeight - radius - 1;
+        }
+        return true;
+    }
+
+    /**
+     * Mirror the ball velocity about the given (not necessarily unit) surface normal.
+     */
+    private void reflect(int ball, float normalX, float normalY) {
+        float length = (float) Math.sqrt(normalX * normalX + normalY * normalY);
+        if (length == 0) {
+            return;
+        }
+        normalX /= length;
+        normalY /= length;
+        float dot = mBalls.dx[ball] * normalX + mBalls.dy[ball] * normalY;
+        if (dot < 0) {
+            mBalls.dx[ball] -= 2 * dot * normalX;
+            mBalls.dy[ball] -= 2 * dot * normalY;
+        }
+    }
+
+    /**
+     * Mirror the ball velocity about the line from the corner to the ball centre.
+     */
+    void reflectOffCorner(int ball, float cornerX, float cornerY) {
+        final BallStore balls = mBalls;
+        double normX = balls.cx[ball] - cornerX;
+        double normY = balls.cy[ball] - cornerY;
+        double c = -2*(balls.dx[ball]*normX + balls.dy[ball]*normY)/
+                (normX*normX + normY*normY);
+        balls.dx[ball] = (float) (balls.dx[ball] + c*normX);
+        balls.dy[ball] = (float) (balls.dy[ball] + c*normY);
+    }
+
+    private int cornerCount(boolean a, boolean b, boolean c, boolean d) {
+        int corners = 0;
+        if (a) {corners++;}
+        if (b) {corners++;}
+        if (c) {corners++;}
+        if (d) {corners++;}
+        return corners;
+    }
+
+    /**
+     * Remember where the moving objects are before a physics step, for interpolation.
+     */
+    public void savePositions() {
+        int ballCount = mBalls.size();
+        System.arraycopy(mBalls.cx, 0, mBalls.prevCx, 0, ballCount);
+        System.arraycopy(mBalls.cy, 0, mBalls.prevCy, 0, ballCount);
+        mComputerPlayer.prevTop = mComputerPlayer.top;
+    }
+
+    /**
+     * Reset players and ball position for a new round.
+     */
+    public void setupNewRound() {
+        movePlayer(mHumanPlayer,
+                2,
+                (mCanvasHeight - mHumanPlayer.paddleHeight) / 2);
+
+        movePlayer(mComputerPlayer,
+                mCanvasWidth - mComputerPlayer.paddleWidth - 2,
+                (mCanvasHeight - mComputerPlayer.paddleHeight) / 2);
+        mBalls.clear();
+        int ball = mBalls.add(mBallRadius);
+        mBalls.set(ball, mCanvasWidth / 8, mCanvasHeight / 2, -PHYS_BALL_SPEED, 0);
+
+        if (GameTrace.ENABLED) {
+            GameTrace.event(GameTrace.ROUND_SETUP, mCanvasWidth / 2, mCanvasHeight / 2);
+        }
+
+        // Use the level generated ahead if it still fits, and start on the one after.
+        // If it doesn't, make it again from the same seed, so the random sequence is used
+        // up the same way whatever the generator and size, which replays don't record.
+        if (mNextLevel == null) {
+            prepareLevel(mRandomGen.nextLong(), null);
+        }
+        await(mNextLevel);
+        if (mNextLevelGenerator != mLevelGenerator
+                || mNextLevelWidth != mCanvasWidth || mNextLevelHeight != mCanvasHeight) {
+            prepareLevel(mNextLevelSeed, null);
+        }
+        BrickStore bricks = mBricks;
+        BrickGrid grid = mBrickGrid;
+        mBricks = mNextBricks;
+        mBrickGrid = mNextBrickGrid;
+        mNextBricks = bricks;
+        mNextBrickGrid = grid;
+        mBrickVersion++;
+        mBrickLayout++;
+        reserveBrickScratch();
+        prepareLevel(mRandomGen.nextLong(), mLevelExecutor);
+
+        savePositions();
+        mComputerAI.reset();
+        if (mRecorder != null) {
+            mRecorder.roundStarted(mBricks);
+        }
+    }
+
+    /**
+     * Start generating a level into the spare brick store, on the executor if there is one.
+     * The spare store must not be in use by an earlier generation.
+     */
+    private void prepareLevel(final long seed, Executor executor) {
+        final LevelGenerator generator = mLevelGenerator;
+        final int width = mCanvasWidth;
+        final int height = mCanvasHeight;
+        final BrickStore bricks = mNextBricks;
+        final BrickGrid grid = mNextBrickGrid;
+        mNextLevelSeed = seed;
+        mNextLevelGenerator = generator;
+        mNextLevelWidth = width;
+        mNextLevelHeight = height;
+        mNextLevel = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                generator.generate(width, height, seed).fill(bricks);
+                grid.rebuild(bricks);
+            }
+        }, null);
+        if (executor != null) {
+            try {
+                executor.execute(mNextLevel);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Shutting down, generate it here instead.
+            }
+        }
+        mNextLevel.run();
+    }
+
+    /**
+     * Wait for a level generation to finish, even if interrupted, so nothing else is
+     * still writing to the spare brick store.
+     */
+    private static void await(FutureTask<Void> level) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    level.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    Random random() {
+        return mRandomGen;
+    }
+
+    /**
+     * Forget the computer's prediction, e.g. when the balls were replaced.
+     */
+    void resetComputerAI() {
+        mComputerAI.reset();
+    }
+
+    BrickGrid getBrickGrid() {
+        return mBrickGrid;
+    }
+
+    /**
+     * Apply the damage of the tick, knocking down the bricks left without health.
+     */
+    private void applyDamage() {
+        final DamageBuffer damage = mDamage;
+        if (damage.size() == 0) {
+            return;
+        }
+        final BrickStore bricks = mBricks;
+        for (int k = 0; k < damage.size(); k++) {
+            int brick = damage.brick(k);
+            bricks.health[brick] -= damage.damage(k);
+            if (bricks.health[brick] <= 0) {
+                mBricksBroken++;
+                bricks.remove(brick);
+                mBrickGrid.remove(bricks, brick);
+            }
+        }
+        damage.clear();
+        mBrickVersion++;
+    }
+
+    public void movePlayer(Player player, float left, float top) {
+        if (left < 2) {
+            left = 2;
+        } else if (left + player.paddleWidth >= mCanvasWidth - 2) {
+            left = mCanvasWidth - player.paddleWidth - 2;
+        }
+        if (top < 0) {
+            top = 0;
+        } else if (top + player.paddleHeight >= mCanvasHeight) {
+            top = mCanvasHeight - player.paddleHeight - 1;
+        }
+        player.offsetTo(left, top);
+    }
+
+    private boolean collision(Player player, int ball) {
+        float cx = mBalls.cx[ball];
+        float cy = mBalls.cy[ball];
+        float radius = mBalls.radius[ball];
+        return player.intersects(cx - radius, cy - radius, cx + radius, cy + radius);
+    }
+
+    /**
+     * Classify how a ball overlaps a brick.
+     *
+     * @return one of the *_HIT codes, or -1 if they don't touch.
+     */
+    int collision(int ball, int brick) {
+        final float cx = mBalls.cx[ball];
+        final float cy = mBalls.cy[ball];
+        final float radius = mBalls.radius[ball];
+        final float left = mBricks.left[brick];
+        final float top = mBricks.top[brick];
+        final float right = mBricks.right[brick];
+        final float bottom = mBricks.bottom[brick];
+
+        float intersectLeft = Math.max(left, cx - radius);
+        float intersectTop = Math.max(top, cy - radius);
+        float intersectRight = Math.min(right, cx + radius);
+        float intersectBottom = Math.min(bottom, cy + radius);
+        if (intersectLeft < intersectRight && intersectTop < intersectBottom) {
+            if (GameTrace.ENABLED) {
+                GameTrace.event(GameTrace.COLLISION_POSSIBLE, cx, cy);
+            }
+            if (cx <= left) {
+                if (cy <= top) {
+                    if (distance(cx, cy, left, top) > radius) {
+                        return -1;
+                    }
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.COLLISION_DETECTED, TOP_LEFT_HIT, 0);
+                    }
+                    return TOP_LEFT_HIT;
+                }
+                if (cy >= bottom) {
+                    if (distance(cx, cy, left, bottom) > radius) {
+                        return -1;
+                    }
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.COLLISION_DETECTED, BOTTOM_LEFT_HIT, 0);
+                    }
+                    return BOTTOM_LEFT_HIT;
+                }
+            }
+            if (cx >= right) {
+                if (cy <= top) {
+                    if (distance(cx, cy, right, top) > radius) {
+                        return -1;
+                    }
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.COLLISION_DETECTED, TOP_RIGHT_HIT, 0);
+                    }
+                    return TOP_RIGHT_HIT;
+                }
+                if (cy >= bottom) {
+                    if (distance(cx, cy, right, bottom) > radius) {
+                        return -1;
+                    }
+                    if (GameTrace.ENABLED) {
+                        GameTrace.event(GameTrace.COLLISION_DETECTED, BOTTOM_RIGHT_HIT, 0);
+                    }
+                    return BOTTOM_RIGHT_HIT;
+                }
+            }
+            if (intersectBottom - intersectTop > intersectRight - intersectLeft) {
+                if (GameTrace.ENABLED) {
+                    GameTrace.event(GameTrace.COLLISION_DETECTED, TOP_BOTTOM_HIT, 0);
+                }
+                return TOP_BOTTOM_HIT;
+            }
+            if (GameTrace.ENABLED) {
+                GameTrace.event(GameTrace.COLLISION_DETECTED, LEFT_RIGHT_HIT, 0);
+            }
+            return LEFT_RIGHT_HIT;
+        }
+        return -1;
+    }
+
+    private double distance(float x1, float y1, float x2, float y2) {
+        return Math.sqrt(Math.pow(Math.abs(x1 - x2), 2) + Math.pow(Math.abs(y1 - y2), 2));
+    }
+
+    /**
+     * Compute ball direction after collision with player paddle.
+     */
+    private void handleCollision(Player player, int ball) {
+        final BallStore balls = mBalls;
+        float relativeIntersectY = player.top + player.paddleHeight / 2 - balls.cy[ball];
+        float normalizedRelativeIntersectY = relativeIntersectY / (player.paddleHeight / 2);
+        double bounceAngle = normalizedRelativeIntersectY * PHYS_MAX_BOUNCE_ANGLE;
+
+        balls.dx[ball] = (float) (-Math.signum(balls.dx[ball]) * PHYS_BALL_SPEED
+                * Math.cos(bounceAngle));
+        balls.dy[ball] = (float) (PHYS_BALL_SPEED * -Math.sin(bounceAngle));
+
+        if (player == mHumanPlayer) {
+            balls.cx[ball] = mHumanPlayer.right + balls.radius[ball];
+        } else {
+            balls.cx[ball] = mComputerPlayer.left - balls.radius[ball];
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package games.pong.engine;
+
+import java.io.PrintWriter;
+
+/**
+ * Structured tracing for the physics hot path.
+ * An event is an id and two float arguments written into a fixed ring buffer,
+ * so tracing costs no string building or logcat I/O while the game runs.
+ * Every call site is guarded by {@link #ENABLED}, a compile-time constant, so javac drops
+ * the tracing code from builds without it. The engine's main jar is built without tracing
+ * and its traced jar with it; the app picks one per build type.
+ */
+public final class GameTrace {
+
+    public static final boolean ENABLED = TraceConfig.ENABLED;
+
+    static final int COLLISION_POSSIBLE = 1; // ball cx, cy
+    static final int COLLISION_DETECTED = 2; // classification
+    static final int COLLISION_COUNTED  = 3; // classification
+    static final int EDGE_RESOLVED      = 4; // classification
+    /**
+     * Flipped axes are 1 for x, 2 for y, 3 for both, or 0 if reflected off the corner.
+     */
+    static final int CORNERS_RESOLVED   = 5; // corner count, flipped axes
+    static final int VELOCITY_BEFORE    = 6; // dx, dy
+    static final int VELOCITY_AFTER     = 7; // dx, dy
+    static final int SWEEP_HIT          = 8; // hit kind, time of impact
+    static final int ROUND_SETUP        = 9; // mid x, mid y
+
+    private static final String[] NAMES = {
+            "", "COLLISION_POSSIBLE", "COLLISION_DETECTED", "COLLISION_COUNTED",
+            "EDGE_RESOLVED", "CORNERS_RESOLVED", "VELOCITY_BEFORE", "VELOCITY_AFTER",
+            "SWEEP_HIT", "ROUND_SETUP"
+    };
+
+    private static final int CAPACITY = ENABLED ? 4096 : 0; // power of two
+
+    private static final int[]   sIds   = new int[CAPACITY];
+    private static final long[]  sTimes = new long[CAPACITY];
+    private static final float[] sArg1  = new float[CAPACITY];
+    private static final float[] sArg2  = new float[CAPACITY];
+
+    /**
+     * Total number of events recorded, the oldest ones are overwritten.
+     */
+    private static int sCount;
+
+    private GameTrace() {
+    }
+
+    /**
+     * Record an event. Only call this behind an {@code if (GameTrace.ENABLED)} check.
+     */
+    static void event(int id, float arg1, float arg2) {
+        int i = sCount & (CAPACITY - 1);
+        sIds[i] = id;
+        sTimes[i] = System.nanoTime();
+        sArg1[i] = arg1;
+        sArg2[i] = arg2;
+        sCount++;
+    }
+
+    /**
+     * Write the buffered events, oldest first. The buffer is not locked,
+     * so events recorded while dumping may show up torn.
+     */
+    public static void dump(PrintWriter writer) {
+        if (!ENABLED) {
+            writer.println("Tracing is disabled in this build.");
+            return;
+        }
+        int count = sCount;
+        int first = Math.max(0, count - CAPACITY);
+        writer.println("Trace events: " + (count - first) + " of " + count);
+        long start = first < count ? sTimes[first & (CAPACITY - 1)] : 0;
+        for (int n = first; n < count; n++) {
+            int i = n & (CAPACITY - 1);
+            int id = sIds[i];
+            writer.print((sTimes[i] - start) / 1000);
+            writer.print("us ");
+            writer.print(id < NAMES.length ? NAMES[id] : Integer.toString(id));
+            writer.print(' ');
+            writer.print(sArg1[i]);
+            writer.print(' ');
+            writer.print(sArg2[i]);
+            if (id == VELOCITY_BEFORE || id == VELOCITY_AFTER) {
+                writer.print(" speed ");
+                writer.print(Math.sqrt(sArg1[i] * sArg1[i] + sArg2[i] * sArg2[i]));
+            }
+            writer.println();
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,130 @@
+package games.pong.engine;
+
+/**
+ * A brick layout as a grid of cells, one byte of brick health per cell, 0 for no brick.
+ * Cells are the size of a brick and the grid is placed on the field at (left, top).
+ */
+public final class Level {
+
+    public static final int MAX_HEALTH = 255;
+
+    private final float  mLeft;
+    private final float  mTop;
+    private final float  mCellWidth;
+    private final float  mCellHeight;
+    private final int    mColumns;
+    private final int    mRows;
+    private final byte[] mCells;
+
+    public Level(float left, float top, float cellWidth, float cellHeight,
+                 int columns, int rows) {
+        if (columns < 0 || rows < 0 || (long) columns * rows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bad level size " + columns + "x" + rows);
+        }
+        mLeft = left;
+        mTop = top;
+        mCellWidth = cellWidth;
+        mCellHeight = cellHeight;
+        mColumns = columns;
+        mRows = rows;
+        mCells = new byte[columns * rows];
+    }
+
+    /**
+     * @return an empty level covering the given fraction of a field, centred on it and
+     * with a whole number of cells on each side of the middle.
+     */
+    public static Level centered(int width, int height, float cellWidth, float cellHeight,
+                                 float fraction) {
+        float midX = width / 2;
+        float midY = height / 2;
+        int halfColumns = (int) Math.ceil(fraction * midX / cellWidth);
+        int halfRows = (int) Math.ceil(fraction * midY / cellHeight);
+        return new Level(midX - halfColumns * cellWidth, midY - halfRows * cellHeight,
+                cellWidth, cellHeight, 2 * halfColumns, 2 * halfRows);
+    }
+
+    public float getLeft() {
+        return mLeft;
+    }
+
+    public float getTop() {
+        return mTop;
+    }
+
+    public float getCellWidth() {
+        return mCellWidth;
+    }
+
+    public float getCellHeight() {
+        return mCellHeight;
+    }
+
+    public int getColumns() {
+        return mColumns;
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public int getHealth(int column, int row) {
+        return mCells[row * mColumns + column] & 0xFF;
+    }
+
+    /**
+     * @param health from 0 for no brick to {@link #MAX_HEALTH}.
+     */
+    public void setHealth(int column, int row, int health) {
+        if (health < 0 || health > MAX_HEALTH) {
+            throw new IllegalArgumentException("Bad brick health " + health);
+        }
+        mCells[row * mColumns + column] = (byte) health;
+    }
+
+    /**
+     * Set the four cells the given number of columns and rows away from the middle,
+     * so the level looks the same from both paddles. For levels with an even number of
+     * columns and rows, like {@link #centered}.
+     */
+    public void setMirrored(int column, int row, int health) {
+        int halfColumns = mColumns / 2;
+        int halfRows = mRows / 2;
+        setHealth(halfColumns + column, halfRows + row, health);
+        setHealth(halfColumns - 1 - column, halfRows + row, health);
+        setHealth(halfColumns + column, halfRows - 1 - row, health);
+        setHealth(halfColumns - 1 - column, halfRows - 1 - row, health);
+    }
+
+    /**
+     * @return the number of cells with a brick.
+     */
+    public int brickCount() {
+        int count = 0;
+        for (byte cell : mCells) {
+            if (cell != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Replace the bricks of the store with the bricks of this level, row by row.
+     */
+    public void fill(BrickStore bricks) {
+        bricks.clear();
+        final byte[] cells = mCells;
+        for (int row = 0; row < mRows; row++) {
+            float top = mTop + row * mCellHeight;
+            float bottom = mTop + (row + 1) * mCellHeight;
+            for (int column = 0; column < mColumns; column++) {
+                int health = cells[row * mColumns + column] & 0xFF;
+                if (health != 0) {
+                    bricks.add(mLeft + column * mCellWidth, top,
+                            mLeft + (column + 1) * mCellWidth, bottom, health);
+                }
+            }
+        }
+    }
+}
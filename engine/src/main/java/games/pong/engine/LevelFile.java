@@ -0,0 +1,236 @@
+package games.pong.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A designed brick board in a compact binary file, read a window at a time. Boards can be
+ * much larger than the field, so nothing is decoded up front: the file is memory mapped and
+ * only the chunks of rows a window touches are read.
+ *
+ * The file starts with the board size, the cell size and the rows per chunk, followed by
+ * the offset of every chunk. Rows are run-length encoded as pairs of a var int run length
+ * and the brick health of the run, 0 for no bricks, which keeps sparse and regular boards
+ * at a few bytes per row. All numbers are little-endian.
+ * Thread safe, windows may be loaded from several threads at once.
+ */
+public final class LevelFile {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4C564C50; // "PLVL"
+
+    private static final int HEADER_BYTES = 7 * 4;
+
+    private final ByteBuffer mData;
+    private final int        mColumns;
+    private final int        mRows;
+    private final float      mCellWidth;
+    private final float      mCellHeight;
+    private final int        mChunkRows;
+    private final int[]      mChunkOffsets;
+
+    private LevelFile(ByteBuffer data, int columns, int rows, float cellWidth, float cellHeight,
+                      int chunkRows, int[] chunkOffsets) {
+        mData = data;
+        mColumns = columns;
+        mRows = rows;
+        mCellWidth = cellWidth;
+        mCellHeight = cellHeight;
+        mChunkRows = chunkRows;
+        mChunkOffsets = chunkOffsets;
+    }
+
+    /**
+     * Map a level file into memory. Only the header and the chunk offsets are read.
+     *
+     * @throws IOException if the file can't be read or isn't a level file of this version.
+     */
+    public static LevelFile open(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            // The mapping stays valid after the channel is closed.
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read a level file from a buffer, e.g. one mapped from an uncompressed asset.
+     *
+     * @throws IOException if the buffer doesn't hold a level file of this version.
+     */
+    public static LevelFile wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (data.remaining() < HEADER_BYTES || data.getInt() != MAGIC) {
+            throw new IOException("Not a level file");
+        }
+        int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported level version " + version);
+        }
+        int columns = data.getInt();
+        int rows = data.getInt();
+        float cellWidth = data.getFloat();
+        float cellHeight = data.getFloat();
+        int chunkRows = data.getInt();
+        if (columns < 0 || rows < 0 || chunkRows <= 0 || !(cellWidth > 0) || !(cellHeight > 0)) {
+            throw new IOException("Bad level header");
+        }
+        int chunks = (int) (((long) rows + chunkRows - 1) / chunkRows);
+        if (data.remaining() < (chunks + 1L) * 4) {
+            throw new IOException("Truncated level file");
+        }
+        int[] offsets = new int[chunks + 1];
+        int previous = HEADER_BYTES + (chunks + 1) * 4;
+        for (int c = 0; c <= chunks; c++) {
+            offsets[c] = data.getInt();
+            if (offsets[c] < previous || offsets[c] > data.limit()) {
+                throw new IOException("Bad level chunk offset " + offsets[c]);
+            }
+            previous = offsets[c];
+        }
+        return new LevelFile(data, columns, rows, cellWidth, cellHeight, chunkRows, offsets);
+    }
+
+    /**
+     * @param chunkRows rows per chunk, the smallest unit read when loading a window.
+     * @return the level in the file format, without its position on the field.
+     */
+    public static byte[] encode(Level level, int chunkRows) {
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("Bad chunk size " + chunkRows);
+        }
+        final int columns = level.getColumns();
+        final int rows = level.getRows();
+        int chunks = (rows + chunkRows - 1) / chunkRows;
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int[] offsets = new int[chunks + 1];
+        int bodyStart = HEADER_BYTES + (chunks + 1) * 4;
+        for (int row = 0; row < rows; row++) {
+            if (row % chunkRows == 0) {
+                offsets[row / chunkRows] = bodyStart + body.size();
+            }
+            int column = 0;
+            while (column < columns) {
+                int health = level.getHealth(column, row);
+                int end = column + 1;
+                while (end < columns && level.getHealth(end, row) == health) {
+                    end++;
+                }
+                putVarInt(body, end - column);
+                body.write(health);
+                column = end;
+            }
+        }
+        offsets[chunks] = bodyStart + body.size();
+
+        ByteBuffer out = ByteBuffer.allocate(bodyStart + body.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(columns);
+        out.putInt(rows);
+        out.putFloat(level.getCellWidth());
+        out.putFloat(level.getCellHeight());
+        out.putInt(chunkRows);
+        for (int offset : offsets) {
+            out.putInt(offset);
+        }
+        out.put(body.toByteArray());
+        return out.array();
+    }
+
+    public int getColumns() {
+        return mColumns;
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public float getCellWidth() {
+        return mCellWidth;
+    }
+
+    public float getCellHeight() {
+        return mCellHeight;
+    }
+
+    /**
+     * Decode a window of the board, reading only the chunks it overlaps.
+     *
+     * @param left where the window goes on the field.
+     * @param top  where the window goes on the field.
+     * @throws IllegalArgumentException if the window is outside the board or a chunk it
+     *                                  overlaps is corrupt.
+     */
+    public Level load(int firstColumn, int firstRow, int columns, int rows,
+                      float left, float top) {
+        if (firstColumn < 0 || firstRow < 0 || columns < 0 || rows < 0
+                || firstColumn + columns > mColumns || firstRow + rows > mRows) {
+            throw new IllegalArgumentException("Window outside the level");
+        }
+        Level level = new Level(left, top, mCellWidth, mCellHeight, columns, rows);
+        if (rows == 0) {
+            return level;
+        }
+        final int endColumn = firstColumn + columns;
+        final int endRow = firstRow + rows;
+        ByteBuffer in = mData.duplicate();
+        int row = firstRow - firstRow % mChunkRows;
+        try {
+            in.position(mChunkOffsets[row / mChunkRows]);
+            for (; row < endRow; row++) {
+                int column = 0;
+                while (column < mColumns) {
+                    int length = getVarInt(in);
+                    int health = in.get() & 0xFF;
+                    if (length <= 0 || length > mColumns - column) {
+                        throw new IllegalArgumentException("Corrupt level row " + row);
+                    }
+                    if (health != 0 && row >= firstRow) {
+                        int from = Math.max(column, firstColumn);
+                        int to = Math.min(column + length, endColumn);
+                        for (int c = from; c < to; c++) {
+                            level.setHealth(c - firstColumn, row - firstRow, health);
+                        }
+                    }
+                    column += length;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated level chunk", e);
+        }
+        return level;
+    }
+
+    private static void putVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int getVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,34 @@
+package games.pong.engine;
+
+import java.util.Random;
+
+/**
+ * Lays out rounds from a designed board in a {@link LevelFile}. A board that fits the brick
+ * area is shown whole, centred on the field. A larger one is shown a field-sized window at
+ * a time, a different part of the board every round, and only that window is read from
+ * the file.
+ */
+public class LevelFileGenerator implements LevelGenerator {
+
+    private final LevelFile mFile;
+
+    public LevelFileGenerator(LevelFile file) {
+        mFile = file;
+    }
+
+    @Override
+    public Level generate(int width, int height, long seed) {
+        // Cut the board to the brick area a generated level would have.
+        Level area = Level.centered(width, height,
+                mFile.getCellWidth(), mFile.getCellHeight(), FIELD_FRACTION);
+        int columns = Math.min(area.getColumns(), mFile.getColumns());
+        int rows = Math.min(area.getRows(), mFile.getRows());
+
+        Random random = new Random(seed);
+        int firstColumn = random.nextInt(mFile.getColumns() - columns + 1);
+        int firstRow = random.nextInt(mFile.getRows() - rows + 1);
+        return mFile.load(firstColumn, firstRow, columns, rows,
+                width / 2 - columns * mFile.getCellWidth() / 2,
+                height / 2 - rows * mFile.getCellHeight() / 2);
+    }
+}
@@ -0,0 +1,23 @@
+package games.pong.engine;
+
+/**
+ * Makes the brick layout of a round.
+ * Implementations must be deterministic: the same field size and seed always give the same
+ * level. They are called off the game thread, so they must not touch the engine.
+ */
+public interface LevelGenerator {
+
+    /**
+     * Bricks are this size, so generated levels line up with the brick grid.
+     */
+    float BRICK_WIDTH  = 100;
+    float BRICK_HEIGHT = 100;
+
+    /**
+     * Most levels leave this fraction of the field around the middle for bricks,
+     * and the rest to the paddles.
+     */
+    float FIELD_FRACTION = 0.65f;
+
+    Level generate(int width, int height, long seed);
+}
@@ -0,0 +1,89 @@
+package games.pong.engine;
+
+/**
+ * Organic, clumped layouts from smoothed value noise: random values on a coarse lattice,
+ * interpolated across the cells in between. Cells where the noise is below the density
+ * get a brick, so roughly that fraction of positions is filled, and the further below the
+ * tougher the brick, so clumps have hard cores. Mirrored like the other layouts so neither
+ * side has an easier field.
+ */
+public class NoiseLevelGenerator implements LevelGenerator {
+
+    private final float mDensity;
+    private final float mScale;
+    private final int   mMaxHealth;
+
+    /**
+     * @param density roughly the fraction of brick positions filled, with single hit bricks.
+     * @param scale   the size of the clumps, in bricks.
+     */
+    public NoiseLevelGenerator(float density, float scale) {
+        this(density, scale, 1);
+    }
+
+    /**
+     * @param density   roughly the fraction of brick positions filled.
+     * @param scale     the size of the clumps, in bricks.
+     * @param maxHealth the most hits a brick takes, in the middle of the clumps.
+     */
+    public NoiseLevelGenerator(float density, float scale, int maxHealth) {
+        if (scale <= 0) {
+            throw new IllegalArgumentException("Bad noise scale " + scale);
+        }
+        if (maxHealth < 1 || maxHealth > Level.MAX_HEALTH) {
+            throw new IllegalArgumentException("Bad brick health " + maxHealth);
+        }
+        mDensity = density;
+        mScale = scale;
+        mMaxHealth = maxHealth;
+    }
+
+    @Override
+    public Level generate(int width, int height, long seed) {
+        Level level = Level.centered(width, height, BRICK_WIDTH, BRICK_HEIGHT, FIELD_FRACTION);
+        for (int i = 0; i < level.getColumns() / 2; i++) {
+            for (int j = 0; j < level.getRows() / 2; j++) {
+                float noise = noise(seed, i / mScale, j / mScale);
+                if (noise < mDensity) {
+                    int health = 1 + (int) ((mDensity - noise) / mDensity * mMaxHealth);
+                    level.setMirrored(i, j, Math.min(health, mMaxHealth));
+                }
+            }
+        }
+        return level;
+    }
+
+    /**
+     * @return smoothed noise in [0, 1) at the given lattice coordinates.
+     */
+    static float noise(long seed, float x, float y) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        float fx = smooth(x - x0);
+        float fy = smooth(y - y0);
+        float top = lerp(lattice(seed, x0, y0), lattice(seed, x0 + 1, y0), fx);
+        float bottom = lerp(lattice(seed, x0, y0 + 1), lattice(seed, x0 + 1, y0 + 1), fx);
+        return lerp(top, bottom, fy);
+    }
+
+    /**
+     * @return a random value in [0, 1) for the lattice point, the same for the same seed.
+     */
+    private static float lattice(long seed, int x, int y) {
+        long h = seed ^ (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (h >>> 40) / (float) (1 << 24);
+    }
+
+    private static float smooth(float t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + (b - a) * t;
+    }
+}
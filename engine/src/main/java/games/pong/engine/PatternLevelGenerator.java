@@ -0,0 +1,52 @@
+package games.pong.engine;
+
+import java.util.Random;
+
+/**
+ * Regular layouts around the middle of the field. The seed picks the spacing and phase,
+ * so rounds with the same pattern still differ.
+ */
+public class PatternLevelGenerator implements LevelGenerator {
+
+    public static final int CHECKERBOARD = 0;
+    public static final int STRIPES      = 1;
+    public static final int DIAMONDS     = 2;
+
+    private final int mPattern;
+
+    /**
+     * @param pattern one of CHECKERBOARD, STRIPES or DIAMONDS.
+     */
+    public PatternLevelGenerator(int pattern) {
+        if (pattern < CHECKERBOARD || pattern > DIAMONDS) {
+            throw new IllegalArgumentException("Unknown pattern " + pattern);
+        }
+        mPattern = pattern;
+    }
+
+    @Override
+    public Level generate(int width, int height, long seed) {
+        Level level = Level.centered(width, height, BRICK_WIDTH, BRICK_HEIGHT, FIELD_FRACTION);
+        Random random = new Random(seed);
+        int size = 1 + random.nextInt(2);
+        int period = 2 + random.nextInt(2);
+        int phase = random.nextInt(period);
+        boolean rows = random.nextBoolean();
+        for (int i = 0; i < level.getColumns() / 2; i++) {
+            for (int j = 0; j < level.getRows() / 2; j++) {
+                boolean brick;
+                if (mPattern == CHECKERBOARD) {
+                    brick = (i / size + j / size + phase) % 2 == 0;
+                } else if (mPattern == STRIPES) {
+                    brick = ((rows ? j : i) + phase) % period < size;
+                } else {
+                    brick = (i + j + phase) % period < size;
+                }
+                if (brick) {
+                    level.setMirrored(i, j, 1);
+                }
+            }
+        }
+        return level;
+    }
+}
@@ -0,0 +1,55 @@
+package games.pong.engine;
+
+/**
+ * Deals with the player's paddle and score
+ * Based on existing code found at:
+ * https://github.com/catalinc/pong-game-android
+ */
+
+public class Player {
+
+    public final int paddleWidth;
+    public final int paddleHeight;
+    public int score;
+    public int collision;
+
+    /**
+     * Paddle bounds.
+     */
+    public float left;
+    public float top;
+    public float right;
+    public float bottom;
+
+    /**
+     * Paddle top before the last physics step, for interpolated drawing.
+     */
+    public float prevTop;
+
+    Player(int paddleWidth, int paddleHeight) {
+        this.paddleWidth = paddleWidth;
+        this.paddleHeight = paddleHeight;
+        this.score = 0;
+        this.right = paddleWidth;
+        this.bottom = paddleHeight;
+        this.collision = 0;
+    }
+
+    public boolean contains(float x, float y) {
+        return left < right && top < bottom
+                && x >= left && x < right && y >= top && y < bottom;
+    }
+
+    boolean intersects(float l, float t, float r, float b) {
+        return left < r && l < right && top < b && t < bottom;
+    }
+
+    void offsetTo(float newLeft, float newTop) {
+        // From the size rather than by the offset, so rounding can't add up over many moves.
+        right = newLeft + paddleWidth;
+        bottom = newTop + paddleHeight;
+        left = newLeft;
+        top = newTop;
+    }
+
+}
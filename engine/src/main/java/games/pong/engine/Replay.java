@@ -0,0 +1,237 @@
+package games.pong.engine;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * A game recorded by {@link ReplayRecorder}, played back headless as fast as the engine
+ * can tick. Playing back the same replay always gives the same game, so it reproduces bugs
+ * seen on a device and makes a realistic, repeatable workload for benchmarks.
+ */
+public final class Replay {
+
+    static final int MAGIC   = 0x50524550; // "PREP"
+    static final int VERSION = 5;
+
+    /**
+     * Ticks between logged checksums.
+     */
+    static final int CHECKSUM_TICKS = 60;
+
+    static final int END           = 0;
+    static final int CHECKSUM      = 1; // int
+    static final int MOVE_PADDLE   = 2; // float dy
+    static final int RESIZE        = 3; // var int width, height
+    static final int DIFFICULTY    = 4; // var int
+    static final int RESET_SCORES  = 5;
+    static final int NEW_ROUND     = 6; // var int length, bricks
+    static final int BRICK_DENSITY = 7; // float
+    static final int SPAWN_BALLS   = 8; // var int count
+    static final int BRICK_HEALTH  = 9; // var int
+
+    private final int    mPaddleWidth;
+    private final int    mPaddleHeight;
+    private final int    mBallRadius;
+    private final long   mSeed;
+    private final int    mDifficulty;
+    private final byte[] mStart;
+    private final byte[] mEvents;
+
+    private Replay(int paddleWidth, int paddleHeight, int ballRadius, long seed,
+                   int difficulty, byte[] start, byte[] events) {
+        mPaddleWidth = paddleWidth;
+        mPaddleHeight = paddleHeight;
+        mBallRadius = ballRadius;
+        mSeed = seed;
+        mDifficulty = difficulty;
+        mStart = start;
+        mEvents = events;
+    }
+
+    /**
+     * @throws IOException if the stream doesn't hold a replay of this version.
+     */
+    public static Replay read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replay");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        int paddleWidth = in.readInt();
+        int paddleHeight = in.readInt();
+        int ballRadius = in.readInt();
+        long seed = in.readLong();
+        int difficulty = in.readInt();
+        byte[] start = new byte[in.readInt()];
+        in.readFully(start);
+        byte[] events = new byte[in.readInt()];
+        in.readFully(events);
+        return new Replay(paddleWidth, paddleHeight, ballRadius, seed,
+                difficulty, start, events);
+    }
+
+    /**
+     * @return an engine in the position the recording started from.
+     */
+    public GameEngine newEngine() {
+        GameEngine engine = new GameEngine(mPaddleWidth, mPaddleHeight, mBallRadius,
+                new Random(mSeed));
+        engine.setDifficulty(mDifficulty);
+        SaveState.restore(engine, mStart);
+        return engine;
+    }
+
+    /**
+     * Run the whole recording on an engine from {@link #newEngine()}, checking the game
+     * against the recorded checksums on the way. Several engines can play the same replay
+     * at once.
+     *
+     * @return -1 if the game matched the recording throughout, otherwise the first tick
+     * at which it had diverged.
+     */
+    public int play(GameEngine engine) {
+        Cursor in = new Cursor(mEvents);
+        int ticks = 0;
+        int desync = -1;
+        while (true) {
+            int eventTick = ticks + in.getVarInt();
+            while (ticks < eventTick) {
+                engine.tick();
+                ticks++;
+            }
+            int type = in.get();
+            switch (type) {
+                case END:
+                    return desync;
+                case CHECKSUM:
+                    if (in.getInt() != checksum(engine) && desync < 0) {
+                        desync = ticks;
+                    }
+                    break;
+                case MOVE_PADDLE:
+                    engine.moveHumanPaddle(Float.intBitsToFloat(in.getInt()));
+                    break;
+                case RESIZE:
+                    int width = in.getVarInt();
+                    engine.setSize(width, in.getVarInt());
+                    break;
+                case DIFFICULTY:
+                    engine.setDifficulty(in.getVarInt());
+                    break;
+                case BRICK_DENSITY:
+                    engine.setBrickDensity(Float.intBitsToFloat(in.getInt()));
+                    break;
+                case RESET_SCORES:
+                    engine.resetScores();
+                    break;
+                case NEW_ROUND:
+                    engine.setupNewRound();
+                    SaveState.restoreBricks(engine, in.getBytes(in.getVarInt()));
+                    break;
+                case SPAWN_BALLS:
+                    engine.spawnBalls(in.getVarInt());
+                    break;
+                case BRICK_HEALTH:
+                    engine.setBrickHealth(in.getVarInt());
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown replay event " + type);
+            }
+        }
+    }
+
+    /**
+     * @return the number of physics ticks in the recording.
+     */
+    public int getTickCount() {
+        Cursor in = new Cursor(mEvents);
+        int ticks = 0;
+        while (true) {
+            ticks += in.getVarInt();
+            int type = in.get();
+            if (type == END) {
+                return ticks;
+            } else if (type == RESIZE) {
+                in.getVarInt();
+                in.getVarInt();
+            } else if (type == DIFFICULTY || type == SPAWN_BALLS
+                    || type == BRICK_HEALTH) {
+                in.getVarInt();
+            } else if (type == CHECKSUM || type == MOVE_PADDLE || type == BRICK_DENSITY) {
+                in.getInt();
+            } else if (type == NEW_ROUND) {
+                in.skip(in.getVarInt());
+            }
+        }
+    }
+
+    /**
+     * Hash of everything a desync would show up in: scores, paddles, balls and brick count.
+     */
+    static int checksum(GameEngine engine) {
+        Player human = engine.getHumanPlayer();
+        Player computer = engine.getComputerPlayer();
+        int hash = human.score;
+        hash = 31 * hash + computer.score;
+        hash = 31 * hash + Float.floatToIntBits(human.top);
+        hash = 31 * hash + Float.floatToIntBits(computer.top);
+        BallStore balls = engine.getBalls();
+        for (int i = 0; i < balls.size(); i++) {
+            hash = 31 * hash + Float.floatToIntBits(balls.cx[i]);
+            hash = 31 * hash + Float.floatToIntBits(balls.cy[i]);
+        }
+        return 31 * hash + engine.getBricks().aliveCount();
+    }
+
+    /**
+     * Reads the packed events written by {@link ReplayRecorder}.
+     */
+    private static final class Cursor {
+
+        private final byte[] mEvents;
+        private int          mPosition;
+
+        Cursor(byte[] events) {
+            mEvents = events;
+        }
+
+        int get() {
+            return mEvents[mPosition++];
+        }
+
+        int getInt() {
+            final byte[] events = mEvents;
+            int p = mPosition;
+            mPosition = p + 4;
+            return (events[p] & 0xFF) << 24 | (events[p + 1] & 0xFF) << 16
+                    | (events[p + 2] & 0xFF) << 8 | events[p + 3] & 0xFF;
+        }
+
+        byte[] getBytes(int length) {
+            byte[] bytes = new byte[length];
+            System.arraycopy(mEvents, mPosition, bytes, 0, length);
+            mPosition += length;
+            return bytes;
+        }
+
+        void skip(int length) {
+            mPosition += length;
+        }
+
+        int getVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = mEvents[mPosition++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
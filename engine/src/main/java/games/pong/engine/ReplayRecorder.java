@@ -0,0 +1,189 @@
+package games.pong.engine;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records a game so {@link Replay} can play it back exactly: the engine parameters,
+ * the random seed, a {@link SaveState} of the starting position and every input since,
+ * stamped with the physics tick it arrived before. Wall-clock time never reaches the physics,
+ * so the tick number is all the timing a replay needs. The generator isn't recorded, the
+ * bricks of every new round are instead, and the engine draws the same random numbers
+ * whichever generator made them.
+ *
+ * A checksum of the game is logged every {@link Replay#CHECKSUM_TICKS} ticks so a replay
+ * can tell where it diverged. Events are packed into a byte array as they come in, a few
+ * bytes each, and only written out on request. The array only grows past the capacity it
+ * was made with, so callers that keep recordings bounded with {@link #getSize()} and
+ * {@link #start(GameEngine, long)} don't allocate while recording.
+ * Not thread safe, use it from the thread that drives the engine.
+ */
+public class ReplayRecorder {
+
+    private GameEngine mEngine;
+    private long       mSeed;
+    private int        mDifficulty;
+    private byte[]     mStart;
+    private int        mTicks;
+    private int        mLastEventTick;
+
+    private byte[] mEvents;
+    private int    mLength;
+
+    public ReplayRecorder() {
+        this(4096);
+    }
+
+    /**
+     * @param capacity bytes of events to make room for up front.
+     */
+    public ReplayRecorder(int capacity) {
+        mEvents = new byte[capacity];
+    }
+
+    /**
+     * Reseed the engine and start a new recording from its current position.
+     */
+    public void start(GameEngine engine, long seed) {
+        stop();
+        engine.setSeed(seed);
+        mEngine = engine;
+        mSeed = seed;
+        mDifficulty = engine.getDifficulty();
+        mStart = SaveState.save(engine);
+        mTicks = 0;
+        mLastEventTick = 0;
+        mLength = 0;
+        engine.setRecorder(this);
+    }
+
+    public void stop() {
+        if (mEngine != null) {
+            mEngine.setRecorder(null);
+        }
+    }
+
+    public int getTickCount() {
+        return mTicks;
+    }
+
+    /**
+     * @return bytes of events recorded since the recording started.
+     */
+    public int getSize() {
+        return mLength;
+    }
+
+    /**
+     * Write the recording so far. Recording carries on afterwards.
+     */
+    public void write(OutputStream stream) throws IOException {
+        if (mStart == null) {
+            throw new IllegalStateException("Nothing recorded");
+        }
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(Replay.MAGIC);
+        out.writeInt(Replay.VERSION);
+        out.writeInt(mEngine.getHumanPlayer().paddleWidth);
+        out.writeInt(mEngine.getHumanPlayer().paddleHeight);
+        out.writeInt(mEngine.getBallRadius());
+        out.writeLong(mSeed);
+        out.writeInt(mDifficulty);
+        out.writeInt(mStart.length);
+        out.write(mStart);
+        int length = mLength;
+        int lastEventTick = mLastEventTick;
+        event(Replay.END);
+        out.writeInt(mLength);
+        out.write(mEvents, 0, mLength);
+        // Recording carries on, drop the end marker again.
+        mLength = length;
+        mLastEventTick = lastEventTick;
+        out.flush();
+    }
+
+    void ticked(GameEngine engine) {
+        if (++mTicks % Replay.CHECKSUM_TICKS == 0) {
+            event(Replay.CHECKSUM);
+            putInt(Replay.checksum(engine));
+        }
+    }
+
+    void paddleMoved(float dy) {
+        event(Replay.MOVE_PADDLE);
+        putInt(Float.floatToIntBits(dy));
+    }
+
+    void resized(int width, int height) {
+        event(Replay.RESIZE);
+        putVarInt(width);
+        putVarInt(height);
+    }
+
+    void difficultyChanged(int difficulty) {
+        event(Replay.DIFFICULTY);
+        putVarInt(difficulty);
+    }
+
+    void brickDensityChanged(float density) {
+        event(Replay.BRICK_DENSITY);
+        putInt(Float.floatToIntBits(density));
+    }
+
+    void brickHealthChanged(int health) {
+        event(Replay.BRICK_HEALTH);
+        putVarInt(health);
+    }
+
+    void ballsSpawned(int count) {
+        event(Replay.SPAWN_BALLS);
+        putVarInt(count);
+    }
+
+    void scoresReset() {
+        event(Replay.RESET_SCORES);
+    }
+
+    void roundStarted(BrickStore bricks) {
+        event(Replay.NEW_ROUND);
+        byte[] layout = SaveState.saveBricks(bricks);
+        putVarInt(layout.length);
+        for (byte b : layout) {
+            put(b);
+        }
+    }
+
+    /**
+     * Events start with the ticks since the previous event and the event type.
+     */
+    private void event(int type) {
+        putVarInt(mTicks - mLastEventTick);
+        mLastEventTick = mTicks;
+        put(type);
+    }
+
+    private void putInt(int value) {
+        put(value >>> 24);
+        put(value >>> 16);
+        put(value >>> 8);
+        put(value);
+    }
+
+    private void putVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            put((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        put(value);
+    }
+
+    private void put(int b) {
+        if (mLength == mEvents.length) {
+            byte[] grown = new byte[mEvents.length * 2];
+            System.arraycopy(mEvents, 0, grown, 0, mLength);
+            mEvents = grown;
+        }
+        mEvents[mLength++] = (byte) b;
+    }
+}
@@ -0,0 +1,374 @@
+package games.pong.engine;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compact, versioned binary snapshot of a game in progress: field size, paddles, balls and
+ * bricks packed into one byte array, written and read in a single pass.
+ *
+ * Bricks that sit on a regular grid, as generated levels do, are stored as a bitmap of
+ * occupied cells with one health byte per brick. Anything else falls back to a list with
+ * the full bounds and health of every brick.
+ */
+public final class SaveState {
+
+    public static final int VERSION = 2;
+
+    private static final int MAGIC = 0x504F4E47; // "PONG"
+
+    private static final byte BRICKS_LIST = 0;
+    private static final byte BRICKS_GRID = 1;
+
+    private static final int HEADER_BYTES = 4 * 4;
+    private static final int PLAYER_BYTES = 4 * 4;
+    private static final int BALL_BYTES   = 5 * 4;
+    private static final int BRICK_BYTES  = 5 * 4;
+    private static final int GRID_BYTES   = 6 * 4;
+
+    private SaveState() {
+    }
+
+    public static byte[] save(GameEngine engine) {
+        final BallStore balls = engine.getBalls();
+        final BrickStore bricks = engine.getBricks();
+        Grid grid = Grid.fit(bricks);
+
+        int size = HEADER_BYTES + 2 * PLAYER_BYTES + 4 + balls.aliveCount() * BALL_BYTES
+                + bricksBytes(bricks, grid);
+
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(engine.getWidth());
+        out.putInt(engine.getHeight());
+        writePlayer(out, engine.getHumanPlayer());
+        writePlayer(out, engine.getComputerPlayer());
+
+        out.putInt(balls.aliveCount());
+        for (int i = 0; i < balls.size(); i++) {
+            if (balls.isAlive(i)) {
+                out.putFloat(balls.cx[i]);
+                out.putFloat(balls.cy[i]);
+                out.putFloat(balls.dx[i]);
+                out.putFloat(balls.dy[i]);
+                out.putFloat(balls.radius[i]);
+            }
+        }
+
+        writeBricks(out, bricks, grid);
+        return out.array();
+    }
+
+    /**
+     * Replace the engine's field, paddles, balls and bricks with the saved ones.
+     * The whole snapshot is read before any of it is applied, so the engine is left
+     * untouched if the data turns out to be bad.
+     *
+     * @throws IllegalArgumentException if the data is not a snapshot of this version.
+     */
+    public static void restore(GameEngine engine, byte[] data) {
+        final Player human = engine.getHumanPlayer();
+        final Player computer = engine.getComputerPlayer();
+        Player savedHuman = new Player(human.paddleWidth, human.paddleHeight);
+        Player savedComputer = new Player(computer.paddleWidth, computer.paddleHeight);
+        BallStore balls;
+        BrickStore bricks;
+        int width;
+        int height;
+
+        ByteBuffer in = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a saved game");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported save version " + version);
+            }
+            width = in.getInt();
+            height = in.getInt();
+            readPlayer(in, savedHuman);
+            readPlayer(in, savedComputer);
+
+            int ballCount = in.getInt();
+            if (ballCount < 0 || ballCount > in.remaining() / BALL_BYTES) {
+                throw new IllegalArgumentException("Bad ball count " + ballCount);
+            }
+            balls = new BallStore(ballCount);
+            for (int k = 0; k < ballCount; k++) {
+                float cx = in.getFloat();
+                float cy = in.getFloat();
+                float dx = in.getFloat();
+                float dy = in.getFloat();
+                int i = balls.add(in.getFloat());
+                balls.set(i, cx, cy, dx, dy);
+            }
+
+            bricks = readBricks(in);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated saved game", e);
+        }
+
+        engine.setSize(width, height);
+        copyPlayer(savedHuman, human);
+        copyPlayer(savedComputer, computer);
+        final BallStore engineBalls = engine.getBalls();
+        engineBalls.clear();
+        for (int i = 0; i < balls.size(); i++) {
+            int j = engineBalls.add(balls.radius[i]);
+            engineBalls.set(j, balls.cx[i], balls.cy[i], balls.dx[i], balls.dy[i]);
+        }
+        copyBricks(bricks, engine);
+        engine.savePositions();
+        // Predict afresh like a new engine would, not from the balls that were replaced.
+        engine.resetComputerAI();
+    }
+
+    /**
+     * @return the standing bricks alone, packed as in a saved game.
+     */
+    static byte[] saveBricks(BrickStore bricks) {
+        Grid grid = Grid.fit(bricks);
+        ByteBuffer out = ByteBuffer.allocate(bricksBytes(bricks, grid))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        writeBricks(out, bricks, grid);
+        return out.array();
+    }
+
+    /**
+     * Replace the engine's bricks with ones from {@link #saveBricks(BrickStore)}.
+     *
+     * @throws IllegalArgumentException if the data is not a brick layout.
+     */
+    static void restoreBricks(GameEngine engine, byte[] data) {
+        BrickStore bricks;
+        try {
+            bricks = readBricks(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated bricks", e);
+        }
+        copyBricks(bricks, engine);
+    }
+
+    private static int bricksBytes(BrickStore bricks, Grid grid) {
+        if (grid != null) {
+            return 1 + GRID_BYTES + grid.bitmapBytes() + bricks.aliveCount();
+        }
+        return 1 + 4 + bricks.aliveCount() * BRICK_BYTES;
+    }
+
+    private static void writeBricks(ByteBuffer out, BrickStore bricks, Grid grid) {
+        if (grid != null) {
+            out.put(BRICKS_GRID);
+            grid.write(out, bricks);
+        } else {
+            out.put(BRICKS_LIST);
+            out.putInt(bricks.aliveCount());
+            for (int k = bricks.nextAlive(0); k >= 0; k = bricks.nextAlive(k + 1)) {
+                out.putFloat(bricks.left[k]);
+                out.putFloat(bricks.top[k]);
+                out.putFloat(bricks.right[k]);
+                out.putFloat(bricks.bottom[k]);
+                out.putInt(bricks.health[k]);
+            }
+        }
+    }
+
+    /**
+     * @return a new store with the bricks read.
+     */
+    private static BrickStore readBricks(ByteBuffer in) {
+        BrickStore bricks = new BrickStore(0);
+        byte format = in.get();
+        if (format == BRICKS_GRID) {
+            Grid.read(in, bricks);
+        } else if (format == BRICKS_LIST) {
+            int brickCount = in.getInt();
+            for (int k = 0; k < brickCount; k++) {
+                bricks.add(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(),
+                        in.getInt());
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown brick format " + format);
+        }
+        return bricks;
+    }
+
+    private static void copyBricks(BrickStore from, GameEngine engine) {
+        final BrickStore bricks = engine.getBricks();
+        bricks.clear();
+        for (int k = 0; k < from.size(); k++) {
+            bricks.add(from.left[k], from.top[k], from.right[k], from.bottom[k],
+                    from.health[k]);
+        }
+        engine.bricksChanged();
+    }
+
+    private static void writePlayer(ByteBuffer out, Player player) {
+        out.putFloat(player.left);
+        out.putFloat(player.top);
+        out.putInt(player.score);
+        out.putInt(player.collision);
+    }
+
+    private static void readPlayer(ByteBuffer in, Player player) {
+        player.offsetTo(in.getFloat(), in.getFloat());
+        player.score = in.getInt();
+        player.collision = in.getInt();
+    }
+
+    private static void copyPlayer(Player from, Player to) {
+        to.offsetTo(from.left, from.top);
+        to.prevTop = to.top;
+        to.score = from.score;
+        to.collision = from.collision;
+    }
+
+    /**
+     * Equal sized bricks on a grid of their own size. Restoring recomputes the
+     * bounds from the cell, so a grid is only used when that gives back the exact same floats.
+     */
+    private static final class Grid {
+
+        private final float mLeft;
+        private final float mTop;
+        private final float mCellWidth;
+        private final float mCellHeight;
+        private final int   mColumns;
+        private final int   mRows;
+
+        /**
+         * Occupied cells, and the brick in each of them.
+         */
+        private byte[] mBitmap;
+        private int[]  mBrickAt;
+
+        private Grid(float left, float top, float cellWidth, float cellHeight,
+                     int columns, int rows) {
+            mLeft = left;
+            mTop = top;
+            mCellWidth = cellWidth;
+            mCellHeight = cellHeight;
+            mColumns = columns;
+            mRows = rows;
+        }
+
+        /**
+         * @return the grid the standing bricks sit on with one brick per cell, or null if they
+         * don't or a list would be smaller.
+         */
+        static Grid fit(BrickStore bricks) {
+            int first = bricks.nextAlive(0);
+            if (first < 0) {
+                return null;
+            }
+            float cellWidth = bricks.right[first] - bricks.left[first];
+            float cellHeight = bricks.bottom[first] - bricks.top[first];
+            if (!(cellWidth > 0 && cellHeight > 0)) {
+                return null;
+            }
+            float minLeft = bricks.left[first];
+            float minTop = bricks.top[first];
+            float maxLeft = minLeft;
+            float maxTop = minTop;
+            for (int k = first; k >= 0; k = bricks.nextAlive(k + 1)) {
+                if (bricks.health[k] < 1 || bricks.health[k] > 255) {
+                    return null;
+                }
+                minLeft = Math.min(minLeft, bricks.left[k]);
+                minTop = Math.min(minTop, bricks.top[k]);
+                maxLeft = Math.max(maxLeft, bricks.left[k]);
+                maxTop = Math.max(maxTop, bricks.top[k]);
+            }
+            long columns = Math.round((maxLeft - minLeft) / cellWidth) + 1;
+            long rows = Math.round((maxTop - minTop) / cellHeight) + 1;
+            long cells = columns * rows;
+            if (cells > Integer.MAX_VALUE
+                    || (cells + 7) / 8 > (long) bricks.aliveCount() * (BRICK_BYTES - 1)) {
+                return null;
+            }
+            Grid grid = new Grid(minLeft, minTop, cellWidth, cellHeight,
+                    (int) columns, (int) rows);
+            byte[] bitmap = new byte[grid.bitmapBytes()];
+            int[] brickAt = new int[(int) cells];
+            for (int k = first; k >= 0; k = bricks.nextAlive(k + 1)) {
+                int cell = grid.cell(bricks, k);
+                if (cell < 0 || (bitmap[cell >>> 3] & 1 << (cell & 7)) != 0) {
+                    return null;
+                }
+                bitmap[cell >>> 3] |= 1 << (cell & 7);
+                brickAt[cell] = k;
+            }
+            grid.mBitmap = bitmap;
+            grid.mBrickAt = brickAt;
+            return grid;
+        }
+
+        int bitmapBytes() {
+            return (mColumns * mRows + 7) / 8;
+        }
+
+        void write(ByteBuffer out, BrickStore bricks) {
+            out.putFloat(mLeft);
+            out.putFloat(mTop);
+            out.putFloat(mCellWidth);
+            out.putFloat(mCellHeight);
+            out.putInt(mColumns);
+            out.putInt(mRows);
+
+            out.put(mBitmap);
+            int cells = mColumns * mRows;
+            for (int cell = 0; cell < cells; cell++) {
+                if ((mBitmap[cell >>> 3] & 1 << (cell & 7)) != 0) {
+                    out.put((byte) bricks.health[mBrickAt[cell]]);
+                }
+            }
+        }
+
+        static void read(ByteBuffer in, BrickStore bricks) {
+            Grid grid = new Grid(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(),
+                    in.getInt(), in.getInt());
+            long area = (long) grid.mColumns * grid.mRows;
+            if (grid.mColumns < 0 || grid.mRows < 0 || area > Integer.MAX_VALUE
+                    || (area + 7) / 8 > in.remaining()) {
+                throw new IllegalArgumentException("Bad brick grid");
+            }
+            byte[] bitmap = new byte[grid.bitmapBytes()];
+            in.get(bitmap);
+            int cells = grid.mColumns * grid.mRows;
+            for (int cell = 0; cell < cells; cell++) {
+                if ((bitmap[cell >>> 3] & 1 << (cell & 7)) != 0) {
+                    int column = cell % grid.mColumns;
+                    int row = cell / grid.mColumns;
+                    bricks.add(grid.left(column), grid.top(row),
+                            grid.left(column + 1), grid.top(row + 1),
+                            in.get() & 0xFF);
+                }
+            }
+        }
+
+        /**
+         * @return the cell of the brick, or -1 if it doesn't exactly fill one.
+         */
+        private int cell(BrickStore bricks, int k) {
+            int column = Math.round((bricks.left[k] - mLeft) / mCellWidth);
+            int row = Math.round((bricks.top[k] - mTop) / mCellHeight);
+            if (column < 0 || column >= mColumns || row < 0 || row >= mRows
+                    || left(column) != bricks.left[k] || left(column + 1) != bricks.right[k]
+                    || top(row) != bricks.top[k] || top(row + 1) != bricks.bottom[k]) {
+                return -1;
+            }
+            return row * mColumns + column;
+        }
+
+        private float left(int column) {
+            return mLeft + column * mCellWidth;
+        }
+
+        private float top(int row) {
+            return mTop + row * mCellHeight;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package games.pong.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays many games headless, as fast as the CPU allows, for tuning the computer player and
+ * the levels. Games are independent and spread over a thread pool, each seeded from its
+ * number, so the results only depend on the settings and not on the number of threads.
+ *
+ * The human side is played by a bot that chases the ball with its own move probability and
+ * paddle speed. It aims for a random spot on the paddle on every return, like a player
+ * putting an angle on the ball; a bot hitting dead centre would keep the ball flat forever.
+ *
+ * Run it with the engine's simulate task, e.g.
+ * gradlew :engine:simulate -Pargs="difficulty=0,1,2 density=0.3,0.7 games=100000"
+ */
+public final class Simulation {
+
+    private static final int PADDLE_WIDTH  = 45;
+    private static final int PADDLE_HEIGHT = 200;
+    private static final int BALL_RADIUS   = 15;
+
+    /**
+     * What to simulate.
+     */
+    public static final class Settings {
+        public int   width                = 1920;
+        public int   height               = 1080;
+        public int   difficulty           = GameEngine.DIFFICULTY_NORMAL;
+        public float humanMoveProbability = 0.6f;
+        public float humanPaddleSpeed     = 10; // per physics tick
+        public float brickDensity         = 0.7f;
+        public int   brickHealth          = 1;
+        public int   games                = 1000;
+        public long  seed                 = 1;
+
+        /**
+         * Games still going after this many physics ticks are abandoned, e.g. a ball
+         * bouncing straight up and down forever.
+         */
+        public int maxTicks = 5 * 60 * GameEngine.PHYS_TICK_RATE;
+    }
+
+    /**
+     * Totals over the simulated games.
+     */
+    public static final class Result {
+        public long games;
+        public long humanWins;
+        public long timeouts;
+        public long ticks;
+        public long paddleHits;
+        public long bricksBroken;
+
+        /**
+         * @return the fraction of finished games the human bot won.
+         */
+        public double humanWinRate() {
+            long finished = games - timeouts;
+            return finished == 0 ? 0 : (double) humanWins / finished;
+        }
+
+        /**
+         * @return the mean number of paddle hits per game.
+         */
+        public double meanRallyLength() {
+            return games == 0 ? 0 : (double) paddleHits / games;
+        }
+
+        /**
+         * @return the mean length of a game in seconds of game time.
+         */
+        public double meanRallySeconds() {
+            return games == 0 ? 0 : (double) ticks / games / GameEngine.PHYS_TICK_RATE;
+        }
+
+        /**
+         * @return bricks knocked down per second of game time.
+         */
+        public double bricksPerSecond() {
+            return ticks == 0 ? 0 : (double) bricksBroken * GameEngine.PHYS_TICK_RATE / ticks;
+        }
+
+        void add(Result other) {
+            games += other.games;
+            humanWins += other.humanWins;
+            timeouts += other.timeouts;
+            ticks += other.ticks;
+            paddleHits += other.paddleHits;
+            bricksBroken += other.bricksBroken;
+        }
+    }
+
+    private Simulation() {
+    }
+
+    /**
+     * Play the games on the calling thread.
+     */
+    public static Result run(Settings settings) {
+        return run(settings, 0, settings.games);
+    }
+
+    /**
+     * Play the games spread over the given number of threads.
+     */
+    public static Result run(final Settings settings, int threads)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // A few batches per thread, so the threads finish at about the same time.
+            int batches = threads * 4;
+            List<Future<Result>> futures = new ArrayList<>(batches);
+            for (int b = 0; b < batches; b++) {
+                final int first = (int) ((long) settings.games * b / batches);
+                final int end = (int) ((long) settings.games * (b + 1) / batches);
+                futures.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return run(settings, first, end);
+                    }
+                }));
+            }
+            Result total = new Result();
+            for (Future<Result> future : futures) {
+                total.add(future.get());
+            }
+            return total;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result run(Settings settings, int firstGame, int endGame) {
+        Result result = new Result();
+        Random random = new Random();
+        GameEngine engine = new GameEngine(PADDLE_WIDTH, PADDLE_HEIGHT, BALL_RADIUS, random);
+        engine.setSize(settings.width, settings.height);
+        engine.setDifficulty(settings.difficulty);
+        engine.setBrickDensity(settings.brickDensity);
+        engine.setBrickHealth(settings.brickHealth);
+        Random human = new Random();
+
+        for (int game = firstGame; game < endGame; game++) {
+            engine.setSeed(settings.seed * 1000003 + game);
+            human.setSeed(~(settings.seed * 1000003 + game));
+            engine.resetScores();
+            engine.setupNewRound();
+            long paddleHits = engine.getPaddleHits();
+            long bricksBroken = engine.getBricksBroken();
+
+            int tick = 0;
+            boolean playing = true;
+            long aimedAt = -1;
+            float aim = 0;
+            while (playing && tick < settings.maxTicks) {
+                if (aimedAt != engine.getPaddleHits()) {
+                    aimedAt = engine.getPaddleHits();
+                    aim = (human.nextFloat() - 0.5f) * 0.8f * PADDLE_HEIGHT;
+                }
+                if (human.nextFloat() < settings.humanMoveProbability) {
+                    moveHuman(engine, aim, settings.humanPaddleSpeed);
+                }
+                playing = engine.tick();
+                tick++;
+            }
+
+            result.games++;
+            result.ticks += tick;
+            result.paddleHits += engine.getPaddleHits() - paddleHits;
+            result.bricksBroken += engine.getBricksBroken() - bricksBroken;
+            if (playing) {
+                result.timeouts++;
+            } else if (engine.getHumanPlayer().score > engine.getComputerPlayer().score) {
+                result.humanWins++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Move the human paddle so the first ball meets it at the given distance from its middle.
+     */
+    private static void moveHuman(GameEngine engine, float aim, float speed) {
+        Player player = engine.getHumanPlayer();
+        float dy = engine.getBalls().cy[0] - aim - (player.top + player.paddleHeight / 2);
+        if (dy != 0) {
+            engine.moveHumanPaddle(Math.max(-speed, Math.min(speed, dy)));
+        }
+    }
+
+    /**
+     * Simulate every combination of the given settings and print a table of the results.
+     * Arguments are name=value pairs, where difficulty and density take comma separated lists:
+     * difficulty, density, human (move probability), speed (human paddle speed), games,
+     * health (most hits a brick takes), threads, canvas (e.g. 1920x1080), seed.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int[] difficulties = {GameEngine.DIFFICULTY_NORMAL};
+        float[] densities = {0.7f};
+        Settings settings = new Settings();
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split < 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            String name = arg.substring(0, split);
+            String value = arg.substring(split + 1);
+            if (name.equals("difficulty")) {
+                float[] levels = parseFloats(value);
+                difficulties = new int[levels.length];
+                for (int i = 0; i < levels.length; i++) {
+                    difficulties[i] = (int) levels[i];
+                }
+            } else if (name.equals("density")) {
+                densities = parseFloats(value);
+            } else if (name.equals("human")) {
+                settings.humanMoveProbability = Float.parseFloat(value);
+            } else if (name.equals("speed")) {
+                settings.humanPaddleSpeed = Float.parseFloat(value);
+            } else if (name.equals("health")) {
+                settings.brickHealth = Integer.parseInt(value);
+            } else if (name.equals("games")) {
+                settings.games = Integer.parseInt(value);
+            } else if (name.equals("threads")) {
+                threads = Integer.parseInt(value);
+            } else if (name.equals("seed")) {
+                settings.seed = Long.parseLong(value);
+            } else if (name.equals("canvas")) {
+                int x = value.indexOf('x');
+                settings.width = Integer.parseInt(value.substring(0, x));
+                settings.height = Integer.parseInt(value.substring(x + 1));
+            } else {
+                throw new IllegalArgumentException("Unknown setting " + name);
+            }
+        }
+
+        System.out.println("difficulty density    games  timeouts  human_win  "
+                + "hits/game  seconds/game  bricks/s  games/s");
+        for (int difficulty : difficulties) {
+            for (float density : densities) {
+                settings.difficulty = difficulty;
+                settings.brickDensity = density;
+                long start = System.nanoTime();
+                Result result = run(settings, threads);
+                double elapsed = (System.nanoTime() - start) / 1e9;
+                System.out.println(String.format(Locale.US,
+                        "%10d %7.2f %8d %9d %10.3f %10.2f %13.2f %9.2f %8.0f",
+                        difficulty, density, result.games, result.timeouts,
+                        result.humanWinRate(), result.meanRallyLength(),
+                        result.meanRallySeconds(), result.bricksPerSecond(),
+                        result.games / elapsed));
+            }
+        }
+    }
+
+    private static float[] parseFloats(String list) {
+        String[] parts = list.split(",");
+        float[] values = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Float.parseFloat(parts[i]);
+        }
+        return values;
+    }
+}
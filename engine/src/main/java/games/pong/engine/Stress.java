@@ -0,0 +1,184 @@
+package games.pong.engine;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Finds how many balls the physics sustains in multi-ball play. The ball count is raised
+ * step by step, topping up lost balls and rebuilding the bricks as they are knocked down,
+ * until the physics of a frame no longer fits its share of the frame time. Timing is wall
+ * clock, so run it on a quiet machine, or on a device to get numbers that matter.
+ *
+ * Run it with the engine's stress task, e.g.
+ * gradlew :engine:stress -Pargs="fps=60 budget=0.5 threads=4"
+ */
+public final class Stress {
+
+    private static final int PADDLE_WIDTH  = 45;
+    private static final int PADDLE_HEIGHT = 200;
+    private static final int BALL_RADIUS   = 15;
+
+    /**
+     * What to measure.
+     */
+    public static final class Settings {
+        public int   width      = 1920;
+        public int   height     = 1080;
+        public int   frameRate  = 60;
+        public float budget     = 0.5f; // fraction of the frame time for physics
+        public int   firstBalls = 64;
+        public float growth     = 1.25f;
+        public int   maxBalls   = 1 << 16;
+        public int   seconds    = 2; // of game time per step
+        public int   threads    = 1; // to move the balls on
+        public long  seed       = 1;
+    }
+
+    /**
+     * The outcome of one ball count.
+     */
+    public static final class Step {
+        public int  balls;
+        public long medianFrameNanos;
+        public long slowFrameNanos; // 95th percentile
+        public boolean sustained;
+    }
+
+    private Stress() {
+    }
+
+    /**
+     * Raise the ball count until a step isn't sustained.
+     *
+     * @return the highest ball count sustained, 0 if not even the first one was.
+     */
+    public static int run(Settings settings, Listener listener) {
+        GameEngine engine = new GameEngine(PADDLE_WIDTH, PADDLE_HEIGHT, BALL_RADIUS,
+                new Random(settings.seed));
+        engine.setSize(settings.width, settings.height);
+        engine.setupNewRound();
+        ExecutorService executor = null;
+        if (settings.threads > 1) {
+            executor = Executors.newFixedThreadPool(settings.threads - 1);
+            engine.setCollisionExecutor(executor, settings.threads);
+        }
+        try {
+            // Warm up so the first step isn't timing the interpreter.
+            measure(engine, settings, settings.firstBalls);
+
+            int sustained = 0;
+            for (float balls = settings.firstBalls; balls <= settings.maxBalls;
+                 balls *= settings.growth) {
+                Step step = measure(engine, settings, (int) balls);
+                if (listener != null) {
+                    listener.onStep(step);
+                }
+                if (!step.sustained) {
+                    break;
+                }
+                sustained = step.balls;
+            }
+            return sustained;
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Told about every step as it is measured.
+     */
+    public interface Listener {
+        void onStep(Step step);
+    }
+
+    private static Step measure(GameEngine engine, Settings settings, int balls) {
+        final int ticksPerFrame = Math.max(1, GameEngine.PHYS_TICK_RATE / settings.frameRate);
+        final int frames = settings.seconds * settings.frameRate;
+        final long budgetNanos = (long) (settings.budget * 1e9 / settings.frameRate);
+        final int fullBricks = Math.max(1, engine.getBricks().aliveCount());
+        long[] frameNanos = new long[frames];
+
+        for (int frame = 0; frame < frames; frame++) {
+            long elapsed = 0;
+            for (int t = 0; t < ticksPerFrame; t++) {
+                if (engine.getBricks().aliveCount() < fullBricks / 2) {
+                    engine.setupNewRound();
+                }
+                engine.spawnBalls(balls - engine.getBalls().aliveCount());
+                long start = System.nanoTime();
+                boolean playing = engine.tick();
+                elapsed += System.nanoTime() - start;
+                if (!playing) {
+                    engine.setupNewRound();
+                }
+            }
+            frameNanos[frame] = elapsed;
+        }
+
+        Arrays.sort(frameNanos);
+        Step step = new Step();
+        step.balls = balls;
+        step.medianFrameNanos = frameNanos[frames / 2];
+        step.slowFrameNanos = frameNanos[(int) (frames * 0.95)];
+        step.sustained = step.slowFrameNanos <= budgetNanos;
+        return step;
+    }
+
+    /**
+     * Arguments are name=value pairs: fps, budget (fraction of a frame), start (balls),
+     * growth, max, seconds (per step), threads, canvas (e.g. 1920x1080), seed.
+     */
+    public static void main(String[] args) {
+        Settings settings = new Settings();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split < 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            String name = arg.substring(0, split);
+            String value = arg.substring(split + 1);
+            if (name.equals("fps")) {
+                settings.frameRate = Integer.parseInt(value);
+            } else if (name.equals("budget")) {
+                settings.budget = Float.parseFloat(value);
+            } else if (name.equals("start")) {
+                settings.firstBalls = Integer.parseInt(value);
+            } else if (name.equals("growth")) {
+                settings.growth = Float.parseFloat(value);
+            } else if (name.equals("max")) {
+                settings.maxBalls = Integer.parseInt(value);
+            } else if (name.equals("seconds")) {
+                settings.seconds = Integer.parseInt(value);
+            } else if (name.equals("threads")) {
+                settings.threads = Integer.parseInt(value);
+            } else if (name.equals("seed")) {
+                settings.seed = Long.parseLong(value);
+            } else if (name.equals("canvas")) {
+                int x = value.indexOf('x');
+                settings.width = Integer.parseInt(value.substring(0, x));
+                settings.height = Integer.parseInt(value.substring(x + 1));
+            } else {
+                throw new IllegalArgumentException("Unknown setting " + name);
+            }
+        }
+
+        final double budgetMillis = settings.budget * 1e3 / settings.frameRate;
+        System.out.println(String.format(Locale.US,
+                "physics budget %.2f ms per frame at %d fps", budgetMillis, settings.frameRate));
+        System.out.println("   balls  median_ms  p95_ms");
+        int sustained = run(settings, new Listener() {
+            @Override
+            public void onStep(Step step) {
+                System.out.println(String.format(Locale.US, "%8d %10.3f %7.3f%s",
+                        step.balls, step.medianFrameNanos / 1e6, step.slowFrameNanos / 1e6,
+                        step.sustained ? "" : "  over budget"));
+            }
+        });
+        System.out.println("sustained " + sustained + " balls");
+    }
+}
@@ -0,0 +1,124 @@
+package games.pong.engine;
+
+/**
+ * Swept circle against axis-aligned rectangle test.
+ * Finds the earliest time a moving ball touches a brick or paddle within one tick,
+ * so fast balls can't skip over thin objects between two frames.
+ */
+class Sweep {
+
+    /**
+     * Contact times closer than this are treated as simultaneous.
+     */
+    static final float EPSILON = 1e-4f;
+
+    /**
+     * Fraction of the move at which the circle first touches the rectangle.
+     */
+    float time;
+
+    /**
+     * Unit surface normal at the contact point, pointing away from the rectangle.
+     */
+    float normalX;
+    float normalY;
+
+    /**
+     * Test a circle of the given radius moving from (cx, cy) by (dx, dy).
+     *
+     * @return true if the circle touches the rectangle at a time in [0, maxTime] while moving
+     * towards it. Circles that already overlap the rectangle are not reported.
+     */
+    boolean circleRect(float cx, float cy, float dx, float dy, float radius,
+                       float left, float top, float right, float bottom, float maxTime) {
+        // Slab test against the rectangle grown by the radius.
+        float tNear = -Float.MAX_VALUE;
+        float tFar = Float.MAX_VALUE;
+
+        if (dx == 0) {
+            if (cx < left - radius || cx > right + radius) {
+                return false;
+            }
+        } else {
+            float t1 = (left - radius - cx) / dx;
+            float t2 = (right + radius - cx) / dx;
+            if (t1 > t2) {
+                float swap = t1;
+                t1 = t2;
+                t2 = swap;
+            }
+            tNear = t1;
+            tFar = t2;
+        }
+
+        if (dy == 0) {
+            if (cy < top - radius || cy > bottom + radius) {
+                return false;
+            }
+        } else {
+            float t1 = (top - radius - cy) / dy;
+            float t2 = (bottom + radius - cy) / dy;
+            if (t1 > t2) {
+                float swap = t1;
+                t1 = t2;
+                t2 = swap;
+            }
+            tNear = Math.max(tNear, t1);
+            tFar = Math.min(tFar, t2);
+        }
+
+        if (tNear > tFar || tFar < 0 || tNear > maxTime) {
+            return false;
+        }
+
+        float t = Math.max(tNear, 0);
+        float px = cx + dx * t;
+        float py = cy + dy * t;
+
+        boolean withinX = px >= left && px <= right;
+        boolean withinY = py >= top && py <= bottom;
+        if (withinX || withinY) {
+            if (tNear < 0) {
+                return false;
+            }
+            time = tNear;
+            if (withinX) {
+                normalX = 0;
+                normalY = dy > 0 ? -1 : 1;
+            } else {
+                normalX = dx > 0 ? -1 : 1;
+                normalY = 0;
+            }
+            return true;
+        }
+
+        // The grown rectangle has square corners, the real shape has round ones.
+        float cornerX = px < left ? left : right;
+        float cornerY = py < top ? top : bottom;
+        return circleCorner(cx, cy, dx, dy, radius, cornerX, cornerY, maxTime);
+    }
+
+    private boolean circleCorner(float cx, float cy, float dx, float dy, float radius,
+                                 float cornerX, float cornerY, float maxTime) {
+        float fx = cx - cornerX;
+        float fy = cy - cornerY;
+        float a = dx * dx + dy * dy;
+        float b = 2 * (fx * dx + fy * dy);
+        float c = fx * fx + fy * fy - radius * radius;
+        if (a == 0 || c < 0) {
+            return false;
+        }
+        float discriminant = b * b - 4 * a * c;
+        if (discriminant < 0) {
+            return false;
+        }
+        float t = (float) ((-b - Math.sqrt(discriminant)) / (2 * a));
+        if (t < 0 || t > maxTime) {
+            return false;
+        }
+        time = t;
+        normalX = (fx + dx * t) / radius;
+        normalY = (fy + dy * t) / radius;
+        return true;
+    }
+}
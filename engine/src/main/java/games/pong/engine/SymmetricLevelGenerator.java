@@ -0,0 +1,50 @@
+package games.pong.engine;
+
+import java.util.Random;
+
+/**
+ * The classic layout: a random quarter of the brick area mirrored into the other three,
+ * each position filled with the given probability and a random health up to the maximum.
+ */
+public class SymmetricLevelGenerator implements LevelGenerator {
+
+    private final float mDensity;
+    private final int   mMaxHealth;
+
+    /**
+     * @param density the fraction of brick positions filled, with single hit bricks.
+     */
+    public SymmetricLevelGenerator(float density) {
+        this(density, 1);
+    }
+
+    /**
+     * @param density   the fraction of brick positions filled.
+     * @param maxHealth the most hits a brick takes.
+     */
+    public SymmetricLevelGenerator(float density, int maxHealth) {
+        if (maxHealth < 1 || maxHealth > Level.MAX_HEALTH) {
+            throw new IllegalArgumentException("Bad brick health " + maxHealth);
+        }
+        mDensity = density;
+        mMaxHealth = maxHealth;
+    }
+
+    public float getDensity() {
+        return mDensity;
+    }
+
+    @Override
+    public Level generate(int width, int height, long seed) {
+        Level level = Level.centered(width, height, BRICK_WIDTH, BRICK_HEIGHT, FIELD_FRACTION);
+        Random random = new Random(seed);
+        for (int i = 0; i < level.getColumns() / 2; i++) {
+            for (int j = 0; j < level.getRows() / 2; j++) {
+                if (random.nextFloat() < mDensity) {
+                    level.setMirrored(i, j, mMaxHealth == 1 ? 1 : 1 + random.nextInt(mMaxHealth));
+                }
+            }
+        }
+        return level;
+    }
+}
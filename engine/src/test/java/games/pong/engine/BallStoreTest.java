@@ -0,0 +1,102 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BallStoreTest {
+
+    /**
+     * @return a store of count balls, each with its index as its x.
+     */
+    private static BallStore balls(int count) {
+        BallStore balls = new BallStore(4);
+        for (int i = 0; i < count; i++) {
+            int ball = balls.add(15);
+            balls.cx[ball] = i;
+        }
+        return balls;
+    }
+
+    @Test
+    public void compact_fillsHighestHolesWithTheLastBalls() {
+        BallStore balls = balls(10);
+        balls.remove(2);
+        balls.remove(5);
+        balls.remove(9);
+        assertEquals(10, balls.size());
+        assertEquals(7, balls.aliveCount());
+        assertFalse(balls.isAlive(5));
+
+        balls.compact();
+
+        assertEquals(7, balls.size());
+        float[] expected = {0, 1, 7, 3, 4, 8, 6};
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(balls.isAlive(i));
+            assertEquals(expected[i], balls.cx[i], 0);
+        }
+    }
+
+    @Test
+    public void compact_keepsEveryBallOnce() {
+        BallStore balls = balls(1000);
+        int[] handles = new int[1000];
+        for (int i = 0; i < 1000; i++) {
+            handles[i] = balls.handle(i);
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(1));
+        List<Integer> removed = order.subList(0, 600);
+        for (int i : removed) {
+            balls.remove(i);
+        }
+        balls.remove(removed.get(0));
+
+        balls.compact();
+
+        assertEquals(400, balls.size());
+        assertEquals(400, balls.aliveCount());
+        for (int ball = 0; ball < 1000; ball++) {
+            int i = balls.indexOf(handles[ball]);
+            if (removed.contains(ball)) {
+                assertEquals(-1, i);
+            } else {
+                assertTrue(i >= 0 && i < 400);
+                assertEquals(ball, balls.cx[i], 0);
+            }
+        }
+    }
+
+    @Test
+    public void handle_goesStaleWhenItsSlotIsReused() {
+        BallStore balls = balls(3);
+        int first = balls.handle(0);
+        int last = balls.handle(2);
+        balls.remove(0);
+        balls.compact();
+        assertEquals(-1, balls.indexOf(first));
+        assertEquals(0, balls.indexOf(last));
+
+        // The new ball takes the freed slot, under a new generation.
+        int ball = balls.add(15);
+        int reused = balls.handle(ball);
+        assertEquals(first & BallStore.HANDLE_INDEX_MASK, reused & BallStore.HANDLE_INDEX_MASK);
+        assertNotEquals(first, reused);
+        assertEquals(-1, balls.indexOf(first));
+        assertEquals(ball, balls.indexOf(reused));
+
+        balls.clear();
+        assertEquals(0, balls.size());
+        assertEquals(-1, balls.indexOf(reused));
+        assertEquals(-1, balls.indexOf(last));
+    }
+}
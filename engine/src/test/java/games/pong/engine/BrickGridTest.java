@@ -0,0 +1,68 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BrickGridTest {
+
+    private static int[] results(BrickGrid grid, int count) {
+        int[] results = new int[count];
+        for (int k = 0; k < count; k++) {
+            results[k] = grid.result(k);
+        }
+        return results;
+    }
+
+    @Test
+    public void query_edgeAlignedBricksOnlyInTheirOwnCells() {
+        BrickStore bricks = new BrickStore(4);
+        bricks.add(0, 0, 100, 100, 1);
+        bricks.add(100, 0, 200, 100, 1);
+        bricks.add(0, 100, 100, 200, 1);
+        BrickGrid grid = new BrickGrid(100, 100);
+        grid.rebuild(bricks);
+
+        assertArrayEquals(new int[] {0}, results(grid, grid.query(10, 10, 90, 90)));
+        assertArrayEquals(new int[] {1}, results(grid, grid.query(110, 10, 190, 90)));
+        assertArrayEquals(new int[] {2}, results(grid, grid.query(10, 110, 90, 190)));
+        assertArrayEquals(new int[] {0, 1}, results(grid, grid.query(90, 10, 110, 90)));
+        assertEquals(0, grid.query(300, 300, 400, 400));
+    }
+
+    @Test
+    public void query_reportsEachBrickOnceInIndexOrder() {
+        BrickStore bricks = new BrickStore(4);
+        bricks.add(100, 0, 200, 100, 1);
+        bricks.add(0, 0, 100, 100, 1);
+        bricks.add(0, 100, 200, 200, 1); // two cells wide
+        BrickGrid grid = new BrickGrid(100, 100);
+        grid.rebuild(bricks);
+
+        assertArrayEquals(new int[] {0, 1, 2}, results(grid, grid.query(0, 0, 199, 199)));
+
+        // Queries of their own don't disturb each other.
+        BrickGrid.Query query = new BrickGrid.Query();
+        assertEquals(1, grid.query(query, 10, 110, 190, 190));
+        assertEquals(2, query.result(0));
+        assertEquals(3, grid.query(0, 0, 199, 199));
+        assertEquals(1, grid.query(query, 10, 110, 190, 190));
+    }
+
+    @Test
+    public void remove_dropsTheBrickFromEveryCell() {
+        BrickStore bricks = new BrickStore(4);
+        bricks.add(0, 0, 100, 100, 1);
+        bricks.add(0, 100, 200, 200, 1);
+        bricks.add(100, 100, 200, 200, 1);
+        BrickGrid grid = new BrickGrid(100, 100);
+        grid.rebuild(bricks);
+
+        bricks.remove(1);
+        grid.remove(bricks, 1);
+
+        assertEquals(0, grid.query(10, 110, 90, 190));
+        assertArrayEquals(new int[] {2}, results(grid, grid.query(110, 110, 190, 190)));
+        assertArrayEquals(new int[] {0, 2}, results(grid, grid.query(0, 0, 199, 199)));
+    }
+}
@@ -0,0 +1,70 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BrickStoreTest {
+
+    private static int add(BrickStore bricks, int column) {
+        return bricks.add(column * 100, 0, column * 100 + 100, 100, 1);
+    }
+
+    @Test
+    public void remove_slotReusedOnlyAfterEndTick() {
+        BrickStore bricks = new BrickStore(4);
+        for (int column = 0; column < 3; column++) {
+            add(bricks, column);
+        }
+        bricks.remove(1);
+        bricks.remove(1);
+        assertEquals(2, bricks.aliveCount());
+        assertEquals(3, add(bricks, 3));
+
+        bricks.endTick();
+        assertEquals(1, add(bricks, 4));
+        assertEquals(400, bricks.left[1], 0);
+        assertEquals(4, add(bricks, 5));
+        assertEquals(5, bricks.size());
+        assertEquals(5, bricks.aliveCount());
+    }
+
+    @Test
+    public void handle_goesStaleWhenTheBrickIsRemoved() {
+        BrickStore bricks = new BrickStore(4);
+        add(bricks, 0);
+        add(bricks, 1);
+        int handle = bricks.handle(1);
+        assertEquals(1, bricks.indexOf(handle));
+
+        bricks.remove(1);
+        assertEquals(-1, bricks.indexOf(handle));
+        bricks.endTick();
+        assertEquals(1, add(bricks, 2));
+        assertEquals(-1, bricks.indexOf(handle));
+        assertEquals(1, bricks.indexOf(bricks.handle(1)));
+
+        int standing = bricks.handle(0);
+        bricks.clear();
+        assertEquals(-1, bricks.indexOf(standing));
+    }
+
+    @Test
+    public void nextAlive_skipsRemovedBricks() {
+        BrickStore bricks = new BrickStore(4);
+        for (int column = 0; column < 200; column++) {
+            add(bricks, column);
+        }
+        for (int i = 0; i < 150; i++) {
+            if (i != 70) {
+                bricks.remove(i);
+            }
+        }
+        assertEquals(70, bricks.nextAlive(0));
+        assertEquals(150, bricks.nextAlive(71));
+        assertEquals(199, bricks.nextAlive(199));
+        assertEquals(-1, bricks.nextAlive(200));
+        bricks.remove(199);
+        assertEquals(-1, bricks.nextAlive(199));
+    }
+}
@@ -0,0 +1,71 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the computer player's predictions and how much work it does per tick.
+ */
+public class ComputerAITest {
+
+    private static GameEngine newEngine(boolean bricks) {
+        GameEngine engine = new GameEngine(45, 200, 15, new Random(1));
+        engine.setSize(1920, 1080);
+        engine.setupNewRound();
+        if (!bricks) {
+            engine.getBricks().clear();
+            engine.bricksChanged();
+        }
+        return engine;
+    }
+
+    @Test
+    public void predict_followsWallBounces() throws Exception {
+        GameEngine engine = newEngine(false);
+        engine.setDifficulty(GameEngine.DIFFICULTY_HARD);
+        BallStore balls = engine.getBalls();
+        balls.get(0).set(200, 300, 5, 8);
+
+        ComputerAI ai = new ComputerAI(engine, 20);
+        ai.setDifficulty(GameEngine.DIFFICULTY_HARD);
+        float predicted = ai.predict(0);
+
+        // Unfold the bounces: the centre moves between radius and height - 1 - radius.
+        float targetX = engine.getComputerPlayer().left - 15;
+        float low = 15;
+        float span = 1080 - 1 - 15 - low;
+        float y = 300 - low + 8 * (targetX - 200) / 5;
+        y = y % (2 * span);
+        float expected = low + (y <= span ? y : 2 * span - y);
+        assertEquals(expected, predicted, 0.5f);
+    }
+
+    @Test
+    public void predict_givesUpWhenBallBouncesBack() throws Exception {
+        GameEngine engine = newEngine(false);
+        engine.getBricks().add(1000, 400, 1100, 600, 1);
+        engine.bricksChanged();
+        engine.getBalls().get(0).set(200, 500, 10, 0);
+
+        ComputerAI ai = new ComputerAI(engine, 20);
+        assertTrue(Float.isNaN(ai.predict(0)));
+    }
+
+    @Test
+    public void update_staysWithinBudget() throws Exception {
+        GameEngine engine = newEngine(true);
+        engine.setDifficulty(GameEngine.DIFFICULTY_HARD);
+
+        for (int tick = 0; tick < 20000; tick++) {
+            long work = engine.getComputerWork();
+            if (!engine.tick()) {
+                engine.setupNewRound();
+            }
+            // One step may run over, a step only looks at a few cells of bricks.
+            assertTrue(engine.getComputerWork() - work <= ComputerAI.WORK_PER_TICK + 32);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the engine headless, the way benchmarks and bulk simulations drive it.
+ */
+public class GameEngineTest {
+
+    private static GameEngine newEngine(long seed) {
+        GameEngine engine = new GameEngine(45, 200, 15, new Random(seed));
+        engine.setSize(1920, 1080);
+        engine.setupNewRound();
+        return engine;
+    }
+
+    @Test
+    public void setupNewRound_placesOneBallAndMirroredBricks() throws Exception {
+        GameEngine engine = newEngine(1);
+
+        assertEquals(1, engine.getBalls().aliveCount());
+        assertTrue(engine.getBricks().aliveCount() > 0);
+        assertEquals(0, engine.getBricks().aliveCount() % 4);
+    }
+
+    @Test
+    public void setBrickHealth_buildsBricksUpToIt() throws Exception {
+        GameEngine engine = newEngine(1);
+        engine.setBrickHealth(3);
+        engine.setupNewRound();
+
+        BrickStore bricks = engine.getBricks();
+        int strongest = 0;
+        for (int k = bricks.nextAlive(0); k >= 0; k = bricks.nextAlive(k + 1)) {
+            assertTrue(bricks.health[k] >= 1 && bricks.health[k] <= 3);
+            strongest = Math.max(strongest, bricks.health[k]);
+        }
+        assertEquals(3, strongest);
+    }
+
+    @Test
+    public void tick_keepsBallsInsideTheField() throws Exception {
+        GameEngine engine = newEngine(2);
+
+        for (int tick = 0; tick < 100000; tick++) {
+            if (!engine.tick()) {
+                engine.setupNewRound();
+            }
+            BallStore balls = engine.getBalls();
+            for (int i = 0; i < balls.size(); i++) {
+                assertTrue(balls.cx[i] >= 0 && balls.cx[i] <= engine.getWidth());
+                assertTrue(balls.cy[i] >= balls.radius[i]
+                        && balls.cy[i] <= engine.getHeight() - balls.radius[i]);
+            }
+        }
+    }
+
+    @Test
+    public void tick_sameSeedSameGame() throws Exception {
+        GameEngine first = newEngine(3);
+        GameEngine second = newEngine(3);
+
+        for (int tick = 0; tick < 10000; tick++) {
+            assertEquals(first.tick(), second.tick());
+            assertEquals(first.getBalls().cx[0], second.getBalls().cx[0], 0);
+            assertEquals(first.getBalls().cy[0], second.getBalls().cy[0], 0);
+            assertEquals(first.getBricks().aliveCount(), second.getBricks().aliveCount());
+        }
+    }
+
+    @Test
+    public void tick_appliesDamageOnceAllBallsMoved() throws Exception {
+        GameEngine engine = newEngine(4);
+        BrickStore bricks = engine.getBricks();
+        bricks.clear();
+        int brick = bricks.add(900, 500, 1000, 600, 3);
+        engine.bricksChanged();
+        BallStore balls = engine.getBalls();
+        balls.get(0).set(880, 520, 10, 0);
+
+        int version = engine.getBrickVersion();
+        engine.tick();
+
+        assertTrue(balls.dx[0] < 0);
+        assertTrue(bricks.isAlive(brick));
+        assertEquals(2, bricks.health[brick]);
+        assertNotEquals(version, engine.getBrickVersion());
+
+        // Two balls hit the brick in the same tick: both bounce off, then it breaks.
+        balls.get(0).set(880, 520, 10, 0);
+        int second = balls.add(15);
+        balls.get(second).set(880, 580, 10, 0);
+        long broken = engine.getBricksBroken();
+        engine.tick();
+
+        assertTrue(balls.dx[0] < 0);
+        assertTrue(balls.dx[second] < 0);
+        assertFalse(bricks.isAlive(brick));
+        assertEquals(broken + 1, engine.getBricksBroken());
+    }
+
+    @Test
+    public void tick_paddleWinsTieWithBrickOnItsFace() throws Exception {
+        GameEngine engine = newEngine(6);
+        Player human = engine.getHumanPlayer();
+        // A brick flush with the paddle face, overlapping its lower end.
+        BrickStore bricks = engine.getBricks();
+        bricks.clear();
+        int brick = bricks.add(human.right - 10, human.bottom - 40, human.right,
+                human.bottom + 60, 3);
+        engine.bricksChanged();
+        BallStore balls = engine.getBalls();
+        balls.get(0).set(human.right + 20, human.bottom - 20, -10, 0);
+
+        long paddleHits = engine.getPaddleHits();
+        engine.tick();
+
+        assertTrue(balls.dx[0] > 0);
+        assertEquals(paddleHits + 1, engine.getPaddleHits());
+        assertTrue(human.collision > 0);
+        assertEquals(3, bricks.health[brick]);
+    }
+
+    @Test
+    public void spawnBalls_keepsThousandsOfBallsInPlay() throws Exception {
+        GameEngine engine = newEngine(5);
+        engine.spawnBalls(1999);
+
+        BallStore balls = engine.getBalls();
+        assertEquals(2000, balls.aliveCount());
+        for (int i = 0; i < balls.size(); i++) {
+            assertEquals(10, Math.hypot(balls.dx[i], balls.dy[i]), 1e-3);
+        }
+        for (int tick = 0; tick < 1000 && engine.tick(); tick++) {
+            assertTrue(balls.aliveCount() >= 1);
+        }
+        assertTrue(engine.getHumanPlayer().score + engine.getComputerPlayer().score > 0);
+    }
+
+    @Test
+    public void tick_parallelCollisionsSameGame() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            GameEngine serial = newEngine(6);
+            GameEngine parallel = newEngine(6);
+            parallel.setCollisionExecutor(executor, 4);
+
+            for (int tick = 0; tick < 2000; tick++) {
+                if (tick % 500 == 0) {
+                    serial.spawnBalls(1000);
+                    parallel.spawnBalls(1000);
+                }
+                boolean playing = serial.tick();
+                assertEquals(playing, parallel.tick());
+                if (!playing) {
+                    serial.setupNewRound();
+                    parallel.setupNewRound();
+                }
+                BallStore expected = serial.getBalls();
+                BallStore actual = parallel.getBalls();
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.cx[i], actual.cx[i], 0);
+                    assertEquals(expected.cy[i], actual.cy[i], 0);
+                }
+                assertEquals(Replay.checksum(serial), Replay.checksum(parallel));
+                assertEquals(serial.getPaddleHits(), parallel.getPaddleHits());
+                assertEquals(serial.getBricksBroken(), parallel.getBricksBroken());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LevelFileTest {
+
+    private static Level board(int columns, int rows, long seed) {
+        Level level = new Level(0, 0, 100, 50, columns, rows);
+        Random random = new Random(seed);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                // Runs of equal cells, like a designed board.
+                if (random.nextInt(4) == 0) {
+                    level.setHealth(column, row, random.nextInt(3));
+                } else if (column > 0) {
+                    level.setHealth(column, row, level.getHealth(column - 1, row));
+                }
+            }
+        }
+        return level;
+    }
+
+    @Test
+    public void load_windowMatchesTheBoard() throws Exception {
+        Level board = board(300, 1000, 1);
+        File file = File.createTempFile("board", ".level");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(LevelFile.encode(board, 16));
+            out.close();
+            LevelFile levelFile = LevelFile.open(file);
+
+            assertEquals(300, levelFile.getColumns());
+            assertEquals(1000, levelFile.getRows());
+            Level window = levelFile.load(120, 517, 40, 30, 10, 20);
+
+            assertEquals(10, window.getLeft(), 0);
+            assertEquals(50, window.getCellHeight(), 0);
+            for (int row = 0; row < 30; row++) {
+                for (int column = 0; column < 40; column++) {
+                    assertEquals(board.getHealth(120 + column, 517 + row),
+                            window.getHealth(column, row));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void wrap_rejectsCorruptFiles() throws Exception {
+        byte[] data = LevelFile.encode(board(10, 10, 2), 4);
+        data[0]++;
+        try {
+            LevelFile.wrap(ByteBuffer.wrap(data));
+            fail();
+        } catch (IOException expected) {
+        }
+
+        data = LevelFile.encode(board(10, 10, 2), 4);
+        // A run longer than the row.
+        data[data.length - 2] = 11;
+        LevelFile levelFile = LevelFile.wrap(ByteBuffer.wrap(data));
+        levelFile.load(0, 0, 10, 8, 0, 0);
+        try {
+            levelFile.load(0, 8, 10, 2, 0, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void generate_showsAFieldSizedWindow() throws Exception {
+        LevelFileGenerator generator = new LevelFileGenerator(
+                LevelFile.wrap(ByteBuffer.wrap(LevelFile.encode(board(500, 2000, 3), 32))));
+
+        Level level = generator.generate(1920, 1080, 4);
+
+        assertEquals(14, level.getColumns());
+        assertEquals(16, level.getRows());
+        assertEquals(1920 / 2 - 7 * 100, level.getLeft(), 0);
+        assertEquals(1080 / 2 - 8 * 50, level.getTop(), 0);
+    }
+}
@@ -0,0 +1,91 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class LevelGeneratorTest {
+
+    private static final LevelGenerator[] GENERATORS = {
+            new SymmetricLevelGenerator(0.5f),
+            new PatternLevelGenerator(PatternLevelGenerator.CHECKERBOARD),
+            new PatternLevelGenerator(PatternLevelGenerator.STRIPES),
+            new PatternLevelGenerator(PatternLevelGenerator.DIAMONDS),
+            new NoiseLevelGenerator(0.5f, 3),
+    };
+
+    @Test
+    public void generate_sameSeedSameMirroredLevel() throws Exception {
+        for (LevelGenerator generator : GENERATORS) {
+            Level level = generator.generate(1920, 1080, 7);
+            Level again = generator.generate(1920, 1080, 7);
+            int columns = level.getColumns();
+            int rows = level.getRows();
+            assertTrue(level.brickCount() > 0);
+            for (int column = 0; column < columns; column++) {
+                for (int row = 0; row < rows; row++) {
+                    int health = level.getHealth(column, row);
+                    assertEquals(health, again.getHealth(column, row));
+                    assertEquals(health, level.getHealth(columns - 1 - column, row));
+                    assertEquals(health, level.getHealth(column, rows - 1 - row));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fill_addsOneBrickPerCell() throws Exception {
+        Level level = new Level(10, 20, 100, 50, 3, 2);
+        level.setHealth(2, 1, 3);
+        BrickStore bricks = new BrickStore(1);
+        bricks.add(0, 0, 1, 1, 1);
+
+        level.fill(bricks);
+
+        assertEquals(1, bricks.aliveCount());
+        int brick = bricks.nextAlive(0);
+        assertEquals(210, bricks.left[brick], 0);
+        assertEquals(70, bricks.top[brick], 0);
+        assertEquals(310, bricks.right[brick], 0);
+        assertEquals(120, bricks.bottom[brick], 0);
+        assertEquals(3, bricks.health[brick]);
+    }
+
+    @Test
+    public void setupNewRound_generatedAheadSameGame() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            GameEngine inline = new GameEngine(45, 200, 15, new Random(5));
+            GameEngine ahead = new GameEngine(45, 200, 15, new Random(5));
+            ahead.setLevelExecutor(executor);
+            for (GameEngine engine : new GameEngine[] {inline, ahead}) {
+                engine.setSize(1920, 1080);
+                engine.setLevelGenerator(new NoiseLevelGenerator(0.6f, 2));
+            }
+
+            for (int round = 0; round < 20; round++) {
+                if (round == 10) {
+                    // A different field makes the level generated ahead useless.
+                    inline.setSize(1280, 720);
+                    ahead.setSize(1280, 720);
+                }
+                inline.setupNewRound();
+                ahead.setupNewRound();
+                assertNotSame(inline.getBricks(), ahead.getBricks());
+                assertEquals(Replay.checksum(inline), Replay.checksum(ahead));
+                BrickStore expected = inline.getBricks();
+                BrickStore actual = ahead.getBricks();
+                for (int i = expected.nextAlive(0); i >= 0; i = expected.nextAlive(i + 1)) {
+                    assertEquals(expected.left[i], actual.left[i], 0);
+                    assertEquals(expected.top[i], actual.top[i], 0);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
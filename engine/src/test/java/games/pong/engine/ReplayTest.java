@@ -0,0 +1,155 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Records scripted games and plays them back.
+ */
+public class ReplayTest {
+
+    /**
+     * Play for the given number of ticks with the human paddle chasing the first ball,
+     * the way a player drags it.
+     */
+    private static void play(GameEngine engine, int ticks) {
+        for (int tick = 0; tick < ticks; tick++) {
+            Player human = engine.getHumanPlayer();
+            float dy = engine.getBalls().cy[0] - (human.top + human.paddleHeight / 2);
+            if (tick % 3 == 0 && dy != 0) {
+                engine.moveHumanPaddle(Math.max(-25, Math.min(25, dy)));
+            }
+            if (!engine.tick()) {
+                engine.resetScores();
+                engine.setupNewRound();
+            }
+        }
+    }
+
+    private static Replay record(GameEngine engine, ReplayRecorder recorder) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.write(out);
+        return Replay.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void play_reproducesRecordedGame() throws Exception {
+        GameEngine engine = new GameEngine(45, 200, 15, new Random());
+        engine.setSize(1920, 1080);
+        engine.setupNewRound();
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.start(engine, 42);
+
+        play(engine, 5000);
+        engine.setSize(1280, 720);
+        engine.setBrickHealth(3);
+        engine.setupNewRound();
+        engine.setDifficulty(GameEngine.DIFFICULTY_HARD);
+        engine.spawnBalls(50);
+        play(engine, 5000);
+
+        Replay replay = record(engine, recorder);
+        GameEngine replayed = replay.newEngine();
+        assertEquals(-1, replay.play(replayed));
+        assertEquals(10000, replay.getTickCount());
+        assertEquals(Replay.checksum(engine), Replay.checksum(replayed));
+    }
+
+    @Test
+    public void play_reportsWhereGameDiverged() throws Exception {
+        GameEngine engine = new GameEngine(45, 200, 15, new Random());
+        engine.setSize(1920, 1080);
+        engine.setupNewRound();
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.start(engine, 7);
+        play(engine, 3000);
+
+        Replay replay = record(engine, recorder);
+        GameEngine replayed = replay.newEngine();
+        replayed.getHumanPlayer().score = 100;
+        assertEquals(Replay.CHECKSUM_TICKS, replay.play(replayed));
+    }
+
+    @Test
+    public void play_reproducesLevelsOfAnyGenerator() throws Exception {
+        GameEngine engine = new GameEngine(45, 200, 15, new Random());
+        engine.setSize(1920, 1080);
+        engine.setupNewRound();
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.start(engine, 11);
+
+        engine.setLevelGenerator(new NoiseLevelGenerator(0.6f, 2));
+        engine.setBrickDensity(0.3f);
+        engine.setupNewRound();
+        play(engine, 3000);
+
+        Replay replay = record(engine, recorder);
+        GameEngine replayed = replay.newEngine();
+        assertEquals(-1, replay.play(replayed));
+        assertTrue(engine.getLevelGenerator() instanceof NoiseLevelGenerator);
+        assertEquals(Replay.checksum(engine), Replay.checksum(replayed));
+    }
+
+    @Test
+    public void play_ignoresGeneratorChangedAfterLevelWasMadeAhead() throws Exception {
+        GameEngine engine = new GameEngine(45, 200, 15, new Random());
+        engine.setSize(1920, 1080);
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.start(engine, 11);
+
+        // The second round's level is made ahead with the classic generator, then dropped.
+        engine.setupNewRound();
+        engine.setLevelGenerator(new NoiseLevelGenerator(0.6f, 2));
+        engine.setupNewRound();
+        play(engine, 3000);
+
+        Replay replay = record(engine, recorder);
+        GameEngine replayed = replay.newEngine();
+        assertEquals(-1, replay.play(replayed));
+        assertEquals(Replay.checksum(engine), Replay.checksum(replayed));
+    }
+
+    @Test
+    public void start_restartsRecordingMidGame() throws Exception {
+        GameEngine engine = new GameEngine(45, 200, 15, new Random(1));
+        engine.setSize(1920, 1080);
+        engine.setupNewRound();
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.start(engine, 10);
+        play(engine, 3000);
+        assertTrue(recorder.getSize() > 0);
+
+        // The computer has a prediction cached here, which the new recording must not keep.
+        recorder.start(engine, 6);
+        assertEquals(0, recorder.getSize());
+        play(engine, 3000);
+
+        Replay replay = record(engine, recorder);
+        GameEngine replayed = replay.newEngine();
+        assertEquals(3000, replay.getTickCount());
+        assertEquals(-1, replay.play(replayed));
+        assertEquals(Replay.checksum(engine), Replay.checksum(replayed));
+    }
+
+    @Test
+    public void write_canBeCalledWhileRecording() throws Exception {
+        GameEngine engine = new GameEngine(45, 200, 15, new Random());
+        engine.setSize(1920, 1080);
+        engine.setupNewRound();
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.start(engine, 3);
+
+        play(engine, 1000);
+        assertEquals(1000, record(engine, recorder).getTickCount());
+        play(engine, 1000);
+
+        Replay replay = record(engine, recorder);
+        assertEquals(2000, replay.getTickCount());
+        assertEquals(-1, replay.play(replay.newEngine()));
+    }
+}
@@ -0,0 +1,152 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips games through the binary save format.
+ */
+public class SaveStateTest {
+
+    private static GameEngine newEngine(long seed) {
+        GameEngine engine = new GameEngine(45, 200, 15, new Random(seed));
+        engine.setSize(1920, 1080);
+        engine.setupNewRound();
+        return engine;
+    }
+
+    private static void assertSameGame(GameEngine expected, GameEngine actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertSamePlayer(expected.getHumanPlayer(), actual.getHumanPlayer());
+        assertSamePlayer(expected.getComputerPlayer(), actual.getComputerPlayer());
+
+        BallStore expectedBalls = expected.getBalls();
+        BallStore actualBalls = actual.getBalls();
+        assertEquals(expectedBalls.aliveCount(), actualBalls.aliveCount());
+        for (int i = 0; i < expectedBalls.size(); i++) {
+            assertEquals(expectedBalls.cx[i], actualBalls.cx[i], 0);
+            assertEquals(expectedBalls.cy[i], actualBalls.cy[i], 0);
+            assertEquals(expectedBalls.dx[i], actualBalls.dx[i], 0);
+            assertEquals(expectedBalls.dy[i], actualBalls.dy[i], 0);
+            assertEquals(expectedBalls.radius[i], actualBalls.radius[i], 0);
+        }
+
+        // Restored bricks may sit in other slots, compare them as sets.
+        BrickStore expectedBricks = expected.getBricks();
+        BrickStore actualBricks = actual.getBricks();
+        assertEquals(expectedBricks.aliveCount(), actualBricks.aliveCount());
+        for (int k = expectedBricks.nextAlive(0); k >= 0; k = expectedBricks.nextAlive(k + 1)) {
+            boolean found = false;
+            for (int j = actualBricks.nextAlive(0); j >= 0 && !found;
+                 j = actualBricks.nextAlive(j + 1)) {
+                found = expectedBricks.left[k] == actualBricks.left[j]
+                        && expectedBricks.top[k] == actualBricks.top[j]
+                        && expectedBricks.right[k] == actualBricks.right[j]
+                        && expectedBricks.bottom[k] == actualBricks.bottom[j]
+                        && expectedBricks.health[k] == actualBricks.health[j];
+            }
+            assertTrue("brick " + k + " missing", found);
+        }
+    }
+
+    private static void assertSamePlayer(Player expected, Player actual) {
+        assertEquals(expected.left, actual.left, 0);
+        assertEquals(expected.top, actual.top, 0);
+        assertEquals(expected.score, actual.score);
+        assertEquals(expected.collision, actual.collision);
+    }
+
+    @Test
+    public void restore_bringsBackGameInProgress() throws Exception {
+        GameEngine saved = newEngine(1);
+        for (int tick = 0; tick < 2000; tick++) {
+            if (!saved.tick()) {
+                saved.setupNewRound();
+            }
+        }
+        BallStore balls = saved.getBalls();
+        balls.get(balls.add(15)).set(300, 400, 3, -4);
+        saved.getHumanPlayer().score = 7;
+
+        GameEngine restored = newEngine(2);
+        restored.getBalls().add(15);
+        restored.getBalls().add(15);
+        SaveState.restore(restored, SaveState.save(saved));
+
+        assertSameGame(saved, restored);
+    }
+
+    @Test
+    public void restore_playsOnLikeAFreshEngine() throws Exception {
+        // Mid-rally, with the computer's prediction of the ball cached.
+        GameEngine saved = newEngine(9);
+        for (int tick = 0; tick < 1500; tick++) {
+            if (!saved.tick()) {
+                saved.setupNewRound();
+            }
+        }
+        byte[] data = SaveState.save(saved);
+
+        GameEngine fresh = new GameEngine(45, 200, 15, new Random());
+        SaveState.restore(fresh, data);
+        SaveState.restore(saved, data);
+        fresh.random().setSeed(10);
+        saved.random().setSeed(10);
+        for (int tick = 0; tick < 2000; tick++) {
+            boolean playing = fresh.tick();
+            assertEquals(playing, saved.tick());
+            assertEquals("tick " + tick, Replay.checksum(fresh), Replay.checksum(saved));
+            if (!playing) {
+                break;
+            }
+        }
+    }
+
+    @Test
+    public void restore_bricksOffTheGrid() throws Exception {
+        GameEngine saved = newEngine(3);
+        BrickStore bricks = saved.getBricks();
+        bricks.add(10.5f, 20.25f, 60, 45, 3);
+        saved.bricksChanged();
+
+        GameEngine restored = newEngine(4);
+        SaveState.restore(restored, SaveState.save(saved));
+
+        assertSameGame(saved, restored);
+    }
+
+    @Test
+    public void save_gridLevelIsCompact() throws Exception {
+        GameEngine engine = newEngine(5);
+
+        int bricks = engine.getBricks().aliveCount();
+        assertTrue(SaveState.save(engine).length < 200 + bricks * 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void restore_rejectsOtherData() throws Exception {
+        SaveState.restore(newEngine(6), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    }
+
+    @Test
+    public void restore_truncatedLeavesGameAlone() throws Exception {
+        byte[] data = SaveState.save(newEngine(7));
+        GameEngine engine = newEngine(8);
+        engine.getHumanPlayer().score = 3;
+        byte[] before = SaveState.save(engine);
+
+        try {
+            SaveState.restore(engine, Arrays.copyOf(data, data.length - 1));
+            fail("restored a truncated save");
+        } catch (IllegalArgumentException expected) {
+            // The game is untouched.
+        }
+
+        assertArrayEquals(before, SaveState.save(engine));
+    }
+}
@@ -0,0 +1,44 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs small batches of headless games.
+ */
+public class SimulationTest {
+
+    private static Simulation.Settings settings() {
+        Simulation.Settings settings = new Simulation.Settings();
+        settings.games = 24;
+        settings.seed = 5;
+        return settings;
+    }
+
+    @Test
+    public void run_sameResultsOnAnyNumberOfThreads() throws Exception {
+        Simulation.Result serial = Simulation.run(settings());
+        Simulation.Result parallel = Simulation.run(settings(), 3);
+
+        assertEquals(24, parallel.games);
+        assertEquals(serial.humanWins, parallel.humanWins);
+        assertEquals(serial.timeouts, parallel.timeouts);
+        assertEquals(serial.ticks, parallel.ticks);
+        assertEquals(serial.paddleHits, parallel.paddleHits);
+        assertEquals(serial.bricksBroken, parallel.bricksBroken);
+    }
+
+    @Test
+    public void run_harderComputerWinsMore() throws Exception {
+        Simulation.Settings settings = settings();
+        settings.difficulty = GameEngine.DIFFICULTY_EASY;
+        Simulation.Result easy = Simulation.run(settings);
+        settings.difficulty = GameEngine.DIFFICULTY_HARD;
+        Simulation.Result hard = Simulation.run(settings);
+
+        assertTrue(easy.humanWinRate() > hard.humanWinRate());
+        assertTrue(hard.paddleHits > 0);
+        assertTrue(hard.bricksBroken > 0);
+    }
+}
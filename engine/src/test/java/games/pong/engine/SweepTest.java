@@ -0,0 +1,54 @@
+package games.pong.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SweepTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void circleRect_hitsTheFaceItMovesTowards() {
+        Sweep sweep = new Sweep();
+        assertTrue(sweep.circleRect(0, 50, 100, 0, 10, 50, 0, 150, 100, 1));
+        assertEquals(0.4f, sweep.time, DELTA);
+        assertEquals(-1, sweep.normalX, 0);
+        assertEquals(0, sweep.normalY, 0);
+
+        assertTrue(sweep.circleRect(100, -40, 0, 100, 10, 50, 0, 150, 100, 1));
+        assertEquals(0.3f, sweep.time, DELTA);
+        assertEquals(0, sweep.normalX, 0);
+        assertEquals(-1, sweep.normalY, 0);
+    }
+
+    @Test
+    public void circleRect_fastBallDoesNotSkipThinRect() {
+        Sweep sweep = new Sweep();
+        assertTrue(sweep.circleRect(0, 50, 200, 0, 10, 50, 0, 52, 100, 1));
+        assertEquals(0.2f, sweep.time, DELTA);
+    }
+
+    @Test
+    public void circleRect_missesOutsideTheMove() {
+        Sweep sweep = new Sweep();
+        // Too far this tick, moving away, passing by, and already overlapping.
+        assertFalse(sweep.circleRect(0, 50, 100, 0, 10, 50, 0, 150, 100, 0.3f));
+        assertFalse(sweep.circleRect(0, 50, -100, 0, 10, 50, 0, 150, 100, 1));
+        assertFalse(sweep.circleRect(0, 150, 100, 0, 10, 50, 0, 150, 100, 1));
+        assertFalse(sweep.circleRect(55, 50, 100, 0, 10, 50, 0, 150, 100, 1));
+    }
+
+    @Test
+    public void circleRect_roundsTheCorners() {
+        Sweep sweep = new Sweep();
+        float inset = (float) (10 / Math.sqrt(2));
+        assertTrue(sweep.circleRect(50, 50, 100, 100, 10, 100, 100, 200, 200, 1));
+        assertEquals((50 - inset) / 100, sweep.time, DELTA);
+        assertEquals(-Math.sqrt(0.5), sweep.normalX, DELTA);
+        assertEquals(-Math.sqrt(0.5), sweep.normalY, DELTA);
+
+        // Inside the rect grown by the radius, but 12 px from the corner at the closest.
+        assertFalse(sweep.circleRect(33, 150, 100, -100, 10, 100, 100, 200, 200, 1));
+    }
+}
@@ -0,0 +1,12 @@
+package games.pong.engine;
+
+/**
+ * Compiled into the engine's traced jar, see GameTrace.
+ */
+final class TraceConfig {
+
+    static final boolean ENABLED = true;
+
+    private TraceConfig() {
+    }
+}
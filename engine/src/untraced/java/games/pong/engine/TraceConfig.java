@@ -0,0 +1,12 @@
+package games.pong.engine;
+
+/**
+ * Compiled into the engine's main jar, so tracing is left out, see GameTrace.
+ */
+final class TraceConfig {
+
+    static final boolean ENABLED = false;
+
+    private TraceConfig() {
+    }
+}
@@ -0,0 +1,59 @@
+package games.pong.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Classifying a ball against a brick: edge hits, corner hits, near misses and clear misses,
+ * in a fixed mix so the branch predictor can't learn a single answer.
+ */
+@State(Scope.Thread)
+public class CollisionBenchmark {
+
+    private static final int POSITIONS = 64;
+
+    private GameEngine mEngine;
+    private BallStore  mBalls;
+    private int        mBrick;
+    private float[]    mCx;
+    private float[]    mCy;
+
+    @Setup
+    public void setUp() {
+        mEngine = Scenarios.newEngine("1920x1080", 42);
+        mBalls = mEngine.getBalls();
+        BrickStore bricks = mEngine.getBricks();
+        mBrick = bricks.nextAlive(0);
+
+        float left = bricks.left[mBrick];
+        float top = bricks.top[mBrick];
+        float width = bricks.right[mBrick] - left;
+        float height = bricks.bottom[mBrick] - top;
+        float radius = mBalls.radius[0];
+
+        // Walk a ring around the brick that passes through its edges and corners.
+        mCx = new float[POSITIONS];
+        mCy = new float[POSITIONS];
+        for (int k = 0; k < POSITIONS; k++) {
+            double angle = 2 * Math.PI * k / POSITIONS;
+            float reach = (k % 4 == 3 ? 2.5f : 0.8f) * radius;
+            mCx[k] = (float) (left + width / 2 + Math.cos(angle) * (width / 2 + reach));
+            mCy[k] = (float) (top + height / 2 + Math.sin(angle) * (height / 2 + reach));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public int classify() {
+        int sum = 0;
+        for (int k = 0; k < POSITIONS; k++) {
+            mBalls.cx[0] = mCx[k];
+            mBalls.cy[0] = mCy[k];
+            sum += mEngine.collision(0, mBrick);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,80 @@
+package games.pong.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The corner math: reflecting a resting ball off a brick corner,
+ * and sweeping a moving ball against a brick's rounded corner.
+ */
+@State(Scope.Thread)
+public class CornerBenchmark {
+
+    private static final int CASES = 32;
+
+    private GameEngine mEngine;
+    private BallStore  mBalls;
+    private Sweep      mSweep;
+
+    private float[] mCx;
+    private float[] mCy;
+    private float[] mDx;
+    private float[] mDy;
+
+    @Setup
+    public void setUp() {
+        mEngine = Scenarios.newEngine("1920x1080", 42);
+        mBalls = mEngine.getBalls();
+        mSweep = new Sweep();
+
+        // Balls just off the top-left corner of a 100 x 100 brick at the origin,
+        // heading roughly at it from different angles.
+        float radius = mBalls.radius[0];
+        mCx = new float[CASES];
+        mCy = new float[CASES];
+        mDx = new float[CASES];
+        mDy = new float[CASES];
+        for (int k = 0; k < CASES; k++) {
+            double side = Math.PI + Math.PI / 2 * (k + 0.5) / CASES;
+            mCx[k] = (float) (Math.cos(side) * radius * 0.9);
+            mCy[k] = (float) (Math.sin(side) * radius * 0.9);
+            double heading = side - Math.PI + (k % 3 - 1) * 0.3;
+            mDx[k] = (float) (Scenarios.BALL_SPEED * Math.cos(heading));
+            mDy[k] = (float) (Scenarios.BALL_SPEED * Math.sin(heading));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASES)
+    public float reflectOffCorner() {
+        float sum = 0;
+        for (int k = 0; k < CASES; k++) {
+            mBalls.cx[0] = mCx[k];
+            mBalls.cy[0] = mCy[k];
+            mBalls.dx[0] = mDx[k];
+            mBalls.dy[0] = mDy[k];
+            mEngine.reflectOffCorner(0, 0, 0);
+            sum += mBalls.dx[0] + mBalls.dy[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CASES)
+    public float sweepCorner() {
+        float radius = Scenarios.BALL_RADIUS;
+        float sum = 0;
+        for (int k = 0; k < CASES; k++) {
+            // Start three steps back so the sweep reaches the rounded corner within the move.
+            float cx = mCx[k] - 3 * mDx[k];
+            float cy = mCy[k] - 3 * mDy[k];
+            if (mSweep.circleRect(cx, cy, 4 * mDx[k], 4 * mDy[k], radius, 0, 0, 100, 100, 1)) {
+                sum += mSweep.time;
+            }
+        }
+        return sum;
+    }
+}
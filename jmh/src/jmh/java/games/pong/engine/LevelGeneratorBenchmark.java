@@ -0,0 +1,63 @@
+package games.pong.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Generating a level and filling a brick store from it, what runs off the game thread.
+ * The file generator pages a field-sized window out of a board of 400 x 20000 bricks.
+ */
+@State(Scope.Thread)
+public class LevelGeneratorBenchmark {
+
+    @Param({"symmetric", "pattern", "noise", "file"})
+    String generator;
+
+    @Param({"1920x1080", "3840x2160"})
+    String canvas;
+
+    private LevelGenerator mGenerator;
+    private BrickStore     mBricks;
+    private int            mWidth;
+    private int            mHeight;
+    private long           mSeed;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (generator.equals("symmetric")) {
+            mGenerator = new SymmetricLevelGenerator(0.7f);
+        } else if (generator.equals("pattern")) {
+            mGenerator = new PatternLevelGenerator(PatternLevelGenerator.DIAMONDS);
+        } else if (generator.equals("noise")) {
+            mGenerator = new NoiseLevelGenerator(0.6f, 3);
+        } else {
+            Level board = new Level(0, 0, LevelGenerator.BRICK_WIDTH, LevelGenerator.BRICK_HEIGHT,
+                    400, 20000);
+            Random random = new Random(42);
+            for (int row = 0; row < board.getRows(); row++) {
+                for (int column = 0; column < board.getColumns(); column++) {
+                    board.setHealth(column, row, random.nextInt(3) == 0 ? 1 : 0);
+                }
+            }
+            mGenerator = new LevelFileGenerator(
+                    LevelFile.wrap(ByteBuffer.wrap(LevelFile.encode(board, 64))));
+        }
+        int x = canvas.indexOf('x');
+        mWidth = Integer.parseInt(canvas.substring(0, x));
+        mHeight = Integer.parseInt(canvas.substring(x + 1));
+        mBricks = new BrickStore(256);
+    }
+
+    @Benchmark
+    public int generate() {
+        mGenerator.generate(mWidth, mHeight, mSeed++).fill(mBricks);
+        return mBricks.aliveCount();
+    }
+}
@@ -0,0 +1,60 @@
+package games.pong.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * One physics step over balls x bricks x canvas size.
+ * Balls get lost and bricks destroyed as the game goes on, so the round is set up again
+ * whenever half of either is gone. That cost is included but spread over many ticks.
+ */
+@State(Scope.Thread)
+public class PhysicsTickBenchmark {
+
+    @Param({"1", "16", "256", "2048"})
+    int balls;
+
+    /**
+     * Fraction of the generated bricks left standing.
+     */
+    @Param({"0", "0.5", "1"})
+    float brickFill;
+
+    @Param({"1280x720", "1920x1080", "3840x2160"})
+    String canvas;
+
+    private GameEngine mEngine;
+    private Random     mRandom;
+    private int        mMinBalls;
+    private int        mMinBricks;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        mEngine = Scenarios.newEngine(canvas, 42);
+        mRandom = new Random(42);
+        newRound();
+    }
+
+    @Benchmark
+    public boolean tick() {
+        boolean playing = mEngine.tick();
+        if (!playing
+                || mEngine.getBalls().aliveCount() < mMinBalls
+                || mEngine.getBricks().aliveCount() < mMinBricks) {
+            newRound();
+        }
+        return playing;
+    }
+
+    private void newRound() {
+        Scenarios.newRound(mEngine, balls, brickFill, mRandom);
+        mMinBalls = (balls + 1) / 2;
+        mMinBricks = mEngine.getBricks().aliveCount() / 2;
+    }
+}
@@ -0,0 +1,40 @@
+package games.pong.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Plays back a recorded session: paddle input, lost balls and new rounds included,
+ * so it exercises the engine the way a real game does. Scores are per physics tick.
+ */
+@State(Scope.Thread)
+public class ReplayBenchmark {
+
+    private static final int TICKS = 60 * GameEngine.PHYS_TICK_RATE;
+
+    @Param({"1280x720", "1920x1080", "3840x2160"})
+    String canvas;
+
+    private Replay mReplay;
+
+    @Setup
+    public void setUp() throws IOException {
+        mReplay = Scenarios.recordSession(canvas, 42, TICKS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public int play() {
+        GameEngine engine = mReplay.newEngine();
+        if (mReplay.play(engine) >= 0) {
+            throw new IllegalStateException("Replay diverged");
+        }
+        return engine.getBricks().aliveCount();
+    }
+}
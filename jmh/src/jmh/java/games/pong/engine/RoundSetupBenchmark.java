@@ -0,0 +1,52 @@
+package games.pong.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Generating the brick field and resetting players and ball for a new round, with the level
+ * generated when the round starts or ahead of it on another thread. Rounds here start back to
+ * back, so generating ahead measures the hand-off between threads; in a game the level is
+ * ready long before it is needed and starting a round is only the swap.
+ */
+@State(Scope.Thread)
+public class RoundSetupBenchmark {
+
+    @Param({"1280x720", "1920x1080", "3840x2160"})
+    String canvas;
+
+    @Param({"false", "true"})
+    boolean ahead;
+
+    private GameEngine      mEngine;
+    private ExecutorService mExecutor;
+
+    @Setup
+    public void setUp() {
+        mEngine = Scenarios.newEngine(canvas, 42);
+        if (ahead) {
+            mExecutor = Executors.newSingleThreadExecutor();
+            mEngine.setLevelExecutor(mExecutor);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public int setupNewRound() {
+        mEngine.setupNewRound();
+        return mEngine.getBricks().aliveCount();
+    }
+}
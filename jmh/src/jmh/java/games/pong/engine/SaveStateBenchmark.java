@@ -0,0 +1,46 @@
+package games.pong.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Saving and restoring a game in progress, e.g. when the activity is recreated.
+ */
+@State(Scope.Thread)
+public class SaveStateBenchmark {
+
+    @Param({"1", "256"})
+    int balls;
+
+    @Param({"0.5", "1"})
+    float brickFill;
+
+    @Param({"1920x1080", "3840x2160"})
+    String canvas;
+
+    private GameEngine mEngine;
+    private byte[]     mSaved;
+
+    @Setup
+    public void setUp() {
+        mEngine = Scenarios.newEngine(canvas, 42);
+        Scenarios.newRound(mEngine, balls, brickFill, new Random(7));
+        mSaved = SaveState.save(mEngine);
+    }
+
+    @Benchmark
+    public byte[] save() {
+        return SaveState.save(mEngine);
+    }
+
+    @Benchmark
+    public int restore() {
+        SaveState.restore(mEngine, mSaved);
+        return mEngine.getBricks().aliveCount();
+    }
+}
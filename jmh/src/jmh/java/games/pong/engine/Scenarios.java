@@ -0,0 +1,88 @@
+package games.pong.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Reproducible game setups shared by the benchmarks.
+ */
+final class Scenarios {
+
+    static final int PADDLE_WIDTH  = 45;
+    static final int PADDLE_HEIGHT = 200;
+    static final int BALL_RADIUS   = 15;
+    static final int BALL_SPEED    = 10;
+
+    private Scenarios() {
+    }
+
+    /**
+     * @param canvas surface size as "WIDTHxHEIGHT", e.g. "1920x1080".
+     */
+    static GameEngine newEngine(String canvas, long seed) {
+        int split = canvas.indexOf('x');
+        GameEngine engine = new GameEngine(PADDLE_WIDTH, PADDLE_HEIGHT, BALL_RADIUS,
+                new Random(seed));
+        engine.setSize(Integer.parseInt(canvas.substring(0, split)),
+                Integer.parseInt(canvas.substring(split + 1)));
+        engine.setupNewRound();
+        return engine;
+    }
+
+    /**
+     * Start a new round with the given number of balls flying in random directions
+     * and only the given fraction of the generated bricks left standing.
+     */
+    static void newRound(GameEngine engine, int ballCount, float brickFill, Random random) {
+        engine.setupNewRound();
+
+        BrickStore bricks = engine.getBricks();
+        for (int i = bricks.nextAlive(0); i >= 0; i = bricks.nextAlive(i + 1)) {
+            if (random.nextFloat() >= brickFill) {
+                bricks.remove(i);
+            }
+        }
+        bricks.endTick();
+        engine.bricksChanged();
+
+        BallStore balls = engine.getBalls();
+        int width = engine.getWidth();
+        int height = engine.getHeight();
+        for (int k = balls.size(); k < ballCount; k++) {
+            int ball = balls.add(engine.getBallRadius());
+            // Spawn in front of the paddles, clear of the bricks in the middle.
+            float cx = random.nextBoolean() ? width / 8 : width - width / 8;
+            float cy = BALL_RADIUS + random.nextFloat() * (height - 2 * BALL_RADIUS);
+            double angle = random.nextDouble() * 2 * Math.PI;
+            balls.set(ball, cx, cy,
+                    (float) (BALL_SPEED * Math.cos(angle)), (float) (BALL_SPEED * Math.sin(angle)));
+        }
+        engine.savePositions();
+    }
+
+    /**
+     * Record a session of the given length with the human paddle chasing the first ball,
+     * the way a player drags it, and a new game whenever one ends.
+     */
+    static Replay recordSession(String canvas, long seed, int ticks) throws IOException {
+        GameEngine engine = newEngine(canvas, seed);
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.start(engine, seed);
+        for (int tick = 0; tick < ticks; tick++) {
+            Player human = engine.getHumanPlayer();
+            float dy = engine.getBalls().cy[0] - (human.top + human.paddleHeight / 2);
+            if (tick % 3 == 0 && dy != 0) {
+                engine.moveHumanPaddle(Math.max(-25, Math.min(25, dy)));
+            }
+            if (!engine.tick()) {
+                engine.resetScores();
+                engine.setupNewRound();
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.write(out);
+        return Replay.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+}